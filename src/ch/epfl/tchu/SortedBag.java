@@ -1,7 +1,9 @@
 package ch.epfl.tchu;
 
 import java.util.*;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Multiensemble trié et immuable.
@@ -11,6 +13,8 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
     // Table associant sa multiplicité à chaque élément de l'ensemble.
     // Invariant : toutes les multiplicités sont strictement positives (> 0).
     private final SortedMap<E, Integer> elements;
+    // Nombre d'éléments (multiplicités comprises), calculé une fois pour toutes à la construction.
+    private final int size;
 
     /**
      * Crée un multiensemble vide.
@@ -81,6 +85,9 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
     private SortedBag(SortedMap<E, Integer> elements) {
         assert elements.values().stream().allMatch(n -> n > 0);
         this.elements = Collections.unmodifiableSortedMap(elements);
+        var size = 0;
+        for (var n : elements.values()) size += n;
+        this.size = size;
     }
 
     /**
@@ -96,9 +103,7 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return le nombre d'éléments dans le multiensemble.
      */
     public int size() {
-        return elements.values().stream()
-                .mapToInt(Integer::intValue)
-                .sum();
+        return size;
     }
 
     /**
@@ -206,18 +211,48 @@ public final class SortedBag<E extends Comparable<E>> implements Iterable<E> {
      * @return un flot des éléments de <code>this</code>
      */
     public Stream<E> stream() {
-        var builder = Stream.<E>builder();
-        elements.forEach((v, n) -> { for (var i = 0; i < n; i++) builder.add(v); });
-        return builder.build();
+        var spliterator = Spliterators.spliterator(iterator(), size,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        return StreamSupport.stream(spliterator, false);
     }
 
     /**
      * Retourne un itérateur sur les éléments du multiensemble.
+     * L'itérateur parcourt directement la table des multiplicités, sans copier les éléments.
      * @return un itérateur sur les éléments de <code>this</code>
      */
     @Override
     public Iterator<E> iterator() {
-        return stream().iterator();
+        return new Iterator<>() {
+            private final Iterator<Map.Entry<E, Integer>> entries = elements.entrySet().iterator();
+            private E element;
+            private int remaining; // nombre d'occurrences de element restant à retourner
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0 || entries.hasNext();
+            }
+
+            @Override
+            public E next() {
+                if (remaining == 0) {
+                    var entry = entries.next(); // lève NoSuchElementException à la fin
+                    element = entry.getKey();
+                    remaining = entry.getValue();
+                }
+                remaining -= 1;
+                return element;
+            }
+        };
+    }
+
+    /**
+     * Applique l'action donnée à chaque élément distinct du multiensemble et à sa multiplicité, dans l'ordre.
+     * @param action l'action à appliquer à chaque couple (élément, multiplicité)
+     */
+    public void forEachEntry(ObjIntConsumer<E> action) {
+        for (var entry : elements.entrySet())
+            action.accept(entry.getKey(), entry.getValue());
     }
 
     /**
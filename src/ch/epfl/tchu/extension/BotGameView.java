@@ -0,0 +1,219 @@
+package ch.epfl.tchu.extension;
+
+import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.game.*;
+
+import java.util.*;
+
+/**
+ * the state of the game as seen by a bot, without any JavaFX property so that a bot can play on a server without
+ * the JavaFX runtime. The view is updated incrementally : the owners of the routes only change for the routes
+ * claimed since the last state (and so do the distances between the stations), the points of the tickets are only computed again when the tickets or the routes
+ * of the bot change, and the claimable routes are only computed when they are asked for.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class BotGameView {
+
+    //the index of each route in its routes is used as index of the arrays and of the bit sets
+    private final static GameMap MAP = GameMap.active();
+
+    private final PlayerId playerId;
+    private final PlayerId[] routeOwners;           //null if the route has no owner
+    private final int[] knownRoutesCount;           //per player, number of its routes already in routeOwners
+    private final int[] ticketCounts;               //per player
+    private final int[] cardCounts;                 //per player
+    private final int[] carCounts;                  //per player
+    private final Map<Ticket, Integer> ticketPoints;
+    private final BitSet claimableRoutes;
+    private final LegalMoves legalMoves;
+    private boolean claimableRoutesUpToDate;
+    private StationDistances distances;
+
+    private PublicGameState publicGameState;
+    private PlayerState playerState;
+
+    /**
+     * @param playerId the bot seeing the game
+     */
+    public BotGameView(PlayerId playerId){
+        this.playerId = playerId;
+        int playerCount = PlayerId.values().length;
+        this.routeOwners = new PlayerId[MAP.routes().size()];
+        this.knownRoutesCount = new int[playerCount];
+        this.ticketCounts = new int[playerCount];
+        this.cardCounts = new int[playerCount];
+        this.carCounts = new int[playerCount];
+        this.ticketPoints = new HashMap<>();
+        this.claimableRoutes = new BitSet(MAP.routes().size());
+        this.legalMoves = new LegalMoves();
+        this.distances = new StationDistances();
+    }
+
+    /**
+     * update the view with the new state of the game
+     * @param newGameState the public state of the game
+     * @param newPlayerState the state of the bot
+     */
+    public void setState(PublicGameState newGameState, PlayerState newPlayerState){
+        for(PlayerId player : PlayerId.getAllPlayer()){
+            PublicPlayerState state = newGameState.playerState(player);
+            List<Route> routes = state.routes();
+            int known = knownRoutesCount[player.ordinal()];
+            if(routes.size() < known){ //the routes of a player are only added during a game, so this is a new game
+                Arrays.fill(routeOwners, null);
+                Arrays.fill(knownRoutesCount, 0);
+                playerState = null;
+                distances = new StationDistances();
+                setState(newGameState, newPlayerState);
+                return;
+            }
+            for(int i=known;i<routes.size();i++){ //only the routes claimed since the last state
+                routeOwners[MAP.routeIndex(routes.get(i))] = player;
+                if(player == playerId) distances.claimedByPlayer(routes.get(i));
+                else distances.claimedByOther(routes.get(i));
+            }
+            knownRoutesCount[player.ordinal()] = routes.size();
+            ticketCounts[player.ordinal()] = state.ticketCount();
+            cardCounts[player.ordinal()] = state.cardCount();
+            carCounts[player.ordinal()] = state.carCount();
+        }
+
+        //the points of the tickets only change with the tickets or the routes of the bot
+        if(playerState == null || !playerState.tickets().equals(newPlayerState.tickets())
+                || playerState.routes().size() != newPlayerState.routes().size()){
+            ticketPoints.clear();
+            StationConnectivity connectivity = newPlayerState.stationConnectivityPlayer();
+            for(Ticket ticket : newPlayerState.tickets()){
+                ticketPoints.put(ticket, ticket.points(connectivity));
+            }
+        }
+
+        publicGameState = newGameState;
+        playerState = newPlayerState;
+        claimableRoutesUpToDate = false;
+    }
+
+    /**
+     * @return the bot seeing the game
+     */
+    public PlayerId playerId(){
+        return playerId;
+    }
+
+    /**
+     * @return the last public state of the game
+     */
+    public PublicGameState gameState(){
+        return publicGameState;
+    }
+
+    /**
+     * @return the last state of the bot
+     */
+    public PlayerState playerState(){
+        return playerState;
+    }
+
+    /**
+     * @param route the route
+     * @return the owner of the route, null if it has none
+     */
+    public PlayerId routeOwner(Route route){
+        return routeOwners[MAP.routeIndex(route)];
+    }
+
+    /**
+     * @param route the route
+     * @return true if the bot is the current player, has the cars and the cards to claim the route, and neither the
+     * route nor its twin is owned
+     */
+    public boolean isClaimable(Route route){
+        return claimableRoutes().get(MAP.routeIndex(route));
+    }
+
+    /**
+     * @return the routes the bot can claim, by their index in the routes of the active map (the returned set must not be modified)
+     */
+    public BitSet claimableRoutes(){
+        if(!claimableRoutesUpToDate){
+            claimableRoutes.clear();
+            if(publicGameState.currentPlayerId() == playerId){
+                legalMoves.update(publicGameState, playerState);
+                claimableRoutes.or(legalMoves.claimableRoutes());
+            }
+            claimableRoutesUpToDate = true;
+        }
+        return claimableRoutes;
+    }
+
+    /**
+     * @return the cost of the cheapest paths between the stations for the bot, given the routes claimed until now
+     */
+    public StationDistances distances(){
+        return distances;
+    }
+
+    /**
+     * @param player the player
+     * @return the number of tickets of the player
+     */
+    public int ticketCount(PlayerId player){
+        return ticketCounts[player.ordinal()];
+    }
+
+    /**
+     * @param player the player
+     * @return the number of cards of the player
+     */
+    public int cardCount(PlayerId player){
+        return cardCounts[player.ordinal()];
+    }
+
+    /**
+     * @param player the player
+     * @return the number of cars the player has left
+     */
+    public int carCount(PlayerId player){
+        return carCounts[player.ordinal()];
+    }
+
+    /**
+     * @param card the type of card
+     * @return the number of cards of this type the bot has
+     */
+    public int cardCountOf(Card card){
+        return playerState.cards().countOf(card);
+    }
+
+    /**
+     * @return the tickets of the bot
+     */
+    public SortedBag<Ticket> tickets(){
+        return playerState.tickets();
+    }
+
+    /**
+     * @param ticket a ticket of the bot
+     * @return the points the ticket currently gives to the bot (negative if it is not completed)
+     */
+    public int ticketPoints(Ticket ticket){
+        return ticketPoints.get(ticket);
+    }
+
+    /**
+     * @param slot the position of the face up card
+     * @return the face up card
+     */
+    public Card faceUpCard(int slot){
+        return publicGameState.cardState().faceUpCard(slot);
+    }
+
+    /**
+     * @param route the route the bot is interested in
+     * @return the sets of cards the bot could use to claim the route
+     */
+    public List<SortedBag<Card>> possibleClaimCards(Route route){
+        return playerState.possibleClaimCards(route);
+    }
+}
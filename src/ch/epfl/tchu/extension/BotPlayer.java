@@ -2,9 +2,8 @@ package ch.epfl.tchu.extension;
 
 import ch.epfl.tchu.SortedBag;
 import ch.epfl.tchu.game.*;
-import ch.epfl.tchu.gui.ObservableGameState;
-import javafx.util.Pair;
-import java.util.ArrayList;
+
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -12,9 +11,10 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
 public final class BotPlayer implements Player {
-    private Pair<Trail, Ticket> targetTrail;
+    private final static Duration PLANNING_BUDGET = Duration.ofMillis(50);
 
-    private ObservableGameState observableGameState;
+    private final TicketPlanner ticketPlanner;
+    private BotGameView gameView;
     private final BlockingQueue<SortedBag<Ticket>> ticketsQueue;
     private final BlockingQueue<Integer> cardQueue;
     private final BlockingQueue<SortedBag<Card>> cardsBagQueue;
@@ -25,6 +25,7 @@ public final class BotPlayer implements Player {
      * creation(initialization) of size one queues intended to contain the bot choices
      */
     public BotPlayer() {
+        this.ticketPlanner = new TicketPlanner(PLANNING_BUDGET);
         this.ticketsQueue = new ArrayBlockingQueue<>(1);
         this.cardQueue = new ArrayBlockingQueue<>(1);
         this.cardsBagQueue = new ArrayBlockingQueue<>(1);
@@ -33,13 +34,13 @@ public final class BotPlayer implements Player {
     }
 
     /**
-     * creation of a new ObservableGameState belonging to the bot
+     * creation of a new view of the game belonging to the bot
      * @param ownId the id of the bot
      * @param playerNames the players names -> ignored
      */
     @Override
     public void initPlayers(PlayerId ownId, Map<PlayerId, String> playerNames) {
-        observableGameState = new ObservableGameState(ownId);
+        gameView = new BotGameView(ownId);
     }
 
     /**
@@ -51,24 +52,26 @@ public final class BotPlayer implements Player {
         System.out.println(info);/*only printing the info in the console do nothing else , don't care about what the other player are doing */ }
 
     /**
-     * update the observableGameState of the bot that was created in initPlayer()
+     * update the view of the game of the bot that was created in initPlayer()
      * @param publicGameState the new State of the game
      * @param ownState the new state of the bot
      */
     @Override
     public void updateState(PublicGameState publicGameState, PlayerState ownState) {
-        observableGameState.setState(publicGameState, ownState);
+        gameView.setState(publicGameState, ownState);
     }
 
     /**
-     *  pick the random n first tickets that the bot can claim
+     *  pick the random n first tickets that the bot can claim, at most Constants.DISCARDABLE_TICKETS_COUNT being discarded
+     *  and at least one being kept (the game keeps all the tickets of an illegal choice)
      * @param tickets the tickets distributed to the bot
      */
     @Override
     public void setInitialTicketChoice(SortedBag<Ticket> tickets) {
         Random rng = new Random();
+        int minimum = Math.max(1, tickets.size() - Constants.DISCARDABLE_TICKETS_COUNT);
         try {
-            ticketsQueue.put(SortedBag.of(tickets.toList().subList(0,2+rng.nextInt(tickets.size()-2))));
+            ticketsQueue.put(SortedBag.of(tickets.toList().subList(0,minimum+rng.nextInt(tickets.size()-minimum+1))));
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
@@ -89,71 +92,30 @@ public final class BotPlayer implements Player {
     }
 
     /**
-     * browse the tickets and for those that have not been captured
-     * call the shortestTrail () method with all the routes owned
-     * or claimable (without taking into account the cards(wagon/locomotive))
-     * and the start and end station of the ticket.
-     * @return the target trail for the bot corresponding to one of his ticket else if not found return null
-     */
-    private Pair<Trail,Ticket> generateTargetTrail(){
-        for(Ticket ticket : observableGameState.ticketPlayer()){
-            if(observableGameState.ticketsPlayerPoints().get(ticket)<0){
-                List<Route> routeCapturable = new ArrayList<>();
-                for (Route route :ChMap.routes()) {
-                    if(observableGameState.routesOwner(route).get()==null || observableGameState.routesOwner(route).get()==observableGameState.playerId()){
-                        routeCapturable.add(route);
-                    }
-                }
-                for(Trip trip : ticket.getTrip()){
-                    Trail shortTrail = Trail.shortestTrail(routeCapturable,trip.from(),trip.to());
-                    if(shortTrail.length()!=0){
-                        return new Pair<>(shortTrail,ticket);
-                    }
-                }
-            }
-        }
-        return null;
-    }
-
-
-    /**
-     * 1. The bot check if he need a new target trail -> hasn't a trail yet or trail not claimable anymore (the opponent player has taken one of the roads belonging to it...)
-     * 2. If he need a new target trail, a new target path between 2 stations composing one of the bot tickets will be regenerated using the new method Trail. shortest ()
-     * 2.1 -> if no path is creatable for each of the bot tickets or all tickets have been completed the ticket is considered lost and the bot draws new tickets from the ticket deck.
-     * 3. If he has a valid target trail , the bot will try to complete his target trail by taking one of the roads belonging to it.
-     * 4. In case the bot has a target path but can't take any of the routes in it, it looks in the up faces if one of the cards in it could be used to take a route from its target path if so it takes it, otherwise it draws a card from the deck.
+     * 0. During the last turn, the bot plays the action giving him the most points at the end of the game (see EndgameSolver)
+     * 1. The bot gets the routes of the network connecting his tickets he has not claimed yet -> the network is only planned again when his tickets change or an opponent player has taken one of its routes
+     * 2. If no ticket can be completed anymore (or all tickets have been completed) the bot draws new tickets from the ticket deck.
+     * 3. Else the bot will try to extend his network by taking one of the roads belonging to it.
+     * 4. In case the bot can't take any of the routes of his network, it looks in the up faces if one of the cards in it could be used to take a route of the network if so it takes it, otherwise it draws a card from the deck.
      * @return the action the bot has done (in the same time he put his choice in the corresponding queue
      */
     @Override
     public TurnKind nextTurn() {
-        if(targetTrail!=null) System.out.println(targetTrail.getKey());
-        Random rng = new Random();
-        boolean validTargetTrail=true;
-        if(targetTrail!=null && targetTrail.getKey().length()!=0 && observableGameState.ticketsPlayerPoints().get(targetTrail.getValue())<0){ //if the points of the ticket are positive then the bot has already completed the trail(ticket) if the target is null then target not found or not defined and if the trail is of length 0
-            for(Route route : targetTrail.getKey().getTrail()){
-                Route twinRoute = route.getTwin();
-                boolean routeStillCapturable=
-                        (observableGameState.routesOwner(route).get()==null ||
-                                observableGameState.routesOwner(route).get()==observableGameState.playerId()) &&
-                                    (twinRoute==null || observableGameState.routesOwner(twinRoute).get()==null ||
-                                        observableGameState.routesOwner(twinRoute).get()==observableGameState.playerId());
-                if(!routeStillCapturable) validTargetTrail=false; break; //if he cannot claim one of the card composing his target trail without taking care of his actual cards, the trail isn't valid anymore
-            }
-        }
-        else{
-            validTargetTrail=false;
-        }
-        //if a new trail is need we generate a new one
-        if(!validTargetTrail)
-            this.targetTrail = generateTargetTrail();
+        //the decisions of a previous turn the game has not asked for (an illegal turn replaced by the fallback turn of the game) are forgotten
+        cardQueue.clear();
+        cardsBagQueue.clear();
+        routesQueue.clear();
+        if(gameView.gameState().lastPlayer() != null) return lastTurn();
 
+        Random rng = new Random();
+        List<Route> plannedRoutes = ticketPlanner.plannedRoutes(gameView);
 
-        if(targetTrail!=null){
-            //the bot try to claim a route or tunnel of his target trail
-            for(Route route : targetTrail.getKey().getTrail()){
-                if(observableGameState.routesOwner(route).get()==null && observableGameState.routeCapturable(route).get()){
+        if(!plannedRoutes.isEmpty()){
+            //the bot try to claim a route or tunnel of his network
+            for(Route route : plannedRoutes){
+                if(gameView.isClaimable(route)){
                     try {
-                        List<SortedBag<Card>> possibleClaimCards = observableGameState.possibleClaimCards(route);
+                        List<SortedBag<Card>> possibleClaimCards = gameView.possibleClaimCards(route);
                         cardsBagQueue.put(possibleClaimCards.get(rng.nextInt(possibleClaimCards.size())));
                         routesQueue.put(route);
                     } catch (InterruptedException e) {
@@ -163,11 +125,11 @@ public final class BotPlayer implements Player {
                 }
             }
 
-            //the bot hadn't the possibility(cards) to claim any route or tunnel so he draw a card of the color of one of the route composing his target trail from the face up card or if not available one of the deck
+            //the bot hadn't the possibility(cards) to claim any route or tunnel so he draw a card of the color of one of the route composing his network from the face up card or if not available one of the deck
            try {
-               for(Route route : targetTrail.getKey().getTrail()){
+               for(Route route : plannedRoutes){
                    for (int slot:Constants.FACE_UP_CARD_SLOTS) {
-                       if(observableGameState.faceUpCard(slot).get().color()==route.color()) {
+                       if(gameView.faceUpCard(slot).color()==route.color()) {
                            cardQueue.put(slot);
                             return TurnKind.DRAW_CARDS;
                        }
@@ -183,6 +145,23 @@ public final class BotPlayer implements Player {
        return TurnKind.DRAW_TICKETS;
     }
 
+    /**
+     * play the action of the last turn given by the EndgameSolver
+     * @return the kind of the action
+     */
+    private TurnKind lastTurn(){
+        EndgameSolver.Move move = EndgameSolver.bestMove(gameView.gameState(), gameView.playerState());
+        try {
+            if(move.kind() == TurnKind.CLAIM_ROUTE){
+                cardsBagQueue.put(move.cards());
+                routesQueue.put(move.route());
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        return move.kind();
+    }
+
     /**
      * let the bot choose between the tickets he has drawn
      * @param options the tickets from which he can choose
@@ -190,6 +169,7 @@ public final class BotPlayer implements Player {
      */
     @Override
     public SortedBag<Ticket> chooseTickets(SortedBag<Ticket> options) {
+        if(gameView.gameState().lastPlayer() != null) return EndgameSolver.bestTickets(gameView.playerState(), options);
         setInitialTicketChoice(options);
         return chooseInitialTickets();
     }
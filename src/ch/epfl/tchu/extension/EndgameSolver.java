@@ -0,0 +1,246 @@
+package ch.epfl.tchu.extension;
+
+import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.game.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * solver of the last turn of a player, once the last turn has begun : all the actions the player can do are evaluated
+ * by the points the player has at the end of the game after them, and the best one is chosen.
+ * The cards and the tickets the player can not see are drawn at random, so the value of an action is the expected
+ * number of points : for a tunnel, the probability of being able to pay the additional cards is computed from the cards
+ * the player can not see (all the cards but the ones of the player and the face up cards), and for the tickets, the
+ * points of the possible draws among the tickets the player does not have are averaged in closed form.
+ * The bonus of the longest trail is not taken into account, and the cards drawn are worth nothing at the end of the game.
+ * The actions are evaluated in parallel by groups on a pool shared by all the solvers.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class EndgameSolver {
+
+    private final static int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+    private final static ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT, r -> {
+        Thread thread = new Thread(r, "endgame-solver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private EndgameSolver(){}
+
+    /**
+     * an action of the last turn and the number of points it is expected to give to the player at the end of the game
+     */
+    public static final class Move {
+        private final Player.TurnKind kind;
+        private final Route route;
+        private final SortedBag<Card> cards;
+        private final double expectedPoints;
+
+        private Move(Player.TurnKind kind, Route route, SortedBag<Card> cards, double expectedPoints){
+            this.kind = kind;
+            this.route = route;
+            this.cards = cards;
+            this.expectedPoints = expectedPoints;
+        }
+
+        /**
+         * @return the kind of the action
+         */
+        public Player.TurnKind kind(){
+            return kind;
+        }
+
+        /**
+         * @return the route to claim, null if the action is not a claim
+         */
+        public Route route(){
+            return route;
+        }
+
+        /**
+         * @return the initial cards used to claim the route, null if the action is not a claim
+         */
+        public SortedBag<Card> cards(){
+            return cards;
+        }
+
+        /**
+         * @return the expected number of points of the player at the end of the game after the action (without the bonus
+         * of the longest trail)
+         */
+        public double expectedPoints(){
+            return expectedPoints;
+        }
+
+        @Override
+        public String toString() {
+            return kind == Player.TurnKind.CLAIM_ROUTE
+                    ? String.format("%s %s %s (%.2f)", kind, route.id(), cards, expectedPoints)
+                    : String.format("%s (%.2f)", kind, expectedPoints);
+        }
+    }
+
+    /**
+     * @param gameState the public state of the game, the player being the current player
+     * @param playerState the state of the player
+     * @return the action of the last turn giving the most points to the player at the end of the game
+     */
+    public static Move bestMove(PublicGameState gameState, PlayerState playerState){
+        List<Callable<Move>> actions = new ArrayList<>();
+        int basePoints = playerState.finalPoints();
+
+        if(gameState.canDrawTickets()){
+            actions.add(() -> new Move(Player.TurnKind.DRAW_TICKETS, null, null, basePoints + expectedTicketGain(gameState, playerState)));
+        }
+        LegalMoves legalMoves = new LegalMoves();
+        legalMoves.update(gameState, playerState);
+        SortedBag<Card> unseenCards = unseenCards(gameState, playerState);
+        BitSet claimableRoutes = legalMoves.claimableRoutes();
+        for(int r=claimableRoutes.nextSetBit(0);r>=0;r=claimableRoutes.nextSetBit(r + 1)){
+            Route route = GameMap.active().routes().get(r);
+            List<SortedBag<Card>> options = LegalMoves.claimCardsOptions(r);
+            long mask = legalMoves.claimCardsMask(r);
+            for(int i=0;i<options.size();i++){
+                if((mask & 1L << i) == 0) continue;
+                SortedBag<Card> cards = options.get(i);
+                actions.add(() -> new Move(Player.TurnKind.CLAIM_ROUTE, route, cards,
+                        basePoints + claimProbability(route, cards, playerState, unseenCards) * claimGain(route, cards, playerState)));
+            }
+        }
+
+        //drawing cards does not change the points, it is the action chosen if no other one gives points (or if no other
+        //action is possible)
+        Move drawCards = new Move(Player.TurnKind.DRAW_CARDS, null, null, basePoints);
+        Move best = gameState.canDrawCards() ? drawCards : null;
+        for(Move move : evaluate(actions)){
+            if(best == null || move.expectedPoints() > best.expectedPoints()) best = move;
+        }
+        return best == null ? drawCards : best;
+    }
+
+    /**
+     * @param playerState the state of the player
+     * @param options the tickets drawn by the player
+     * @return the tickets to keep at the end of the game : the completed ones, or the least costly one if none is completed
+     */
+    public static SortedBag<Ticket> bestTickets(PlayerState playerState, SortedBag<Ticket> options){
+        StationConnectivity connectivity = playerState.stationConnectivityPlayer();
+        SortedBag.Builder<Ticket> kept = new SortedBag.Builder<>();
+        Ticket leastCostly = null;
+        for(Ticket ticket : options){
+            int points = ticket.points(connectivity);
+            if(points > 0) kept.add(ticket);
+            if(leastCostly == null || points > leastCostly.points(connectivity)) leastCostly = ticket;
+        }
+        return kept.size() > 0 ? kept.build() : SortedBag.of(leastCostly);
+    }
+
+    /**
+     * evaluate the actions in parallel, by as many groups as there are threads
+     */
+    private static List<Move> evaluate(List<Callable<Move>> actions){
+        List<Callable<List<Move>>> groups = new ArrayList<>();
+        int groupSize = (actions.size() + THREAD_COUNT - 1) / THREAD_COUNT;
+        for(int start=0;start<actions.size();start+=groupSize){
+            List<Callable<Move>> group = actions.subList(start, Math.min(start + groupSize, actions.size()));
+            groups.add(() -> {
+                List<Move> moves = new ArrayList<>();
+                for(Callable<Move> action : group) moves.add(action.call());
+                return moves;
+            });
+        }
+
+        List<Move> moves = new ArrayList<>();
+        try {
+            for(Future<List<Move>> group : EXECUTOR.invokeAll(groups)) moves.addAll(group.get());
+        } catch (ExecutionException e) {
+            //the exception of an evaluation is thrown as if it had been done on the thread of the caller
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if(e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new Error(e.getCause());
+        } catch (InterruptedException e) {
+            throw new Error();
+        }
+        return moves;
+    }
+
+    /**
+     * @return the points of the claim of the route (the points of the route and the ones the tickets gain)
+     */
+    private static int claimGain(Route route, SortedBag<Card> cards, PlayerState playerState){
+        return route.claimPoints() + playerState.withClaimedRoute(route, cards).ticketPoints() - playerState.ticketPoints();
+    }
+
+    /**
+     * @return the probability that the player can claim the route with the cards, 1 if the route is not a tunnel
+     */
+    private static double claimProbability(Route route, SortedBag<Card> cards, PlayerState playerState, SortedBag<Card> unseenCards){
+        if(route.level() == Route.Level.OVERGROUND) return 1;
+
+        //the drawn cards cost an additional card if they are locomotives or of the type of the initial cards
+        int matching = unseenCards.countOf(Card.LOCOMOTIVE);
+        int payable = playerState.cards().countOf(Card.LOCOMOTIVE) - cards.countOf(Card.LOCOMOTIVE);
+        for(Card card : Card.CARS){
+            if(cards.contains(card)){
+                matching += unseenCards.countOf(card);
+                payable += playerState.cards().countOf(card) - cards.countOf(card);
+            }
+        }
+
+        int drawn = Math.min(Constants.ADDITIONAL_TUNNEL_CARDS, unseenCards.size());
+        double probability = 0;
+        for(int additional=0;additional<=Math.min(drawn, payable);additional++){
+            probability += combinations(matching, additional) * combinations(unseenCards.size() - matching, drawn - additional)
+                    / combinations(unseenCards.size(), drawn);
+        }
+        return probability;
+    }
+
+    /**
+     * @return the expected points of the tickets kept by the player after drawing tickets among the ones he does not
+     * have, the best ones being kept : all the tickets with positive points, or the best one if there is none.
+     * The player can not know which of these tickets are in the deck, so each draw of the size of the draw among them is
+     * equally likely, and the expectation is computed in closed form from their sorted points instead of enumerating
+     * the draws : a positive ticket is drawn with probability drawn / n, and when no drawn ticket is positive the best
+     * one is the j-th best non positive ticket in C(m - j, drawn - 1) of the C(n, drawn) draws (m being the number of
+     * non positive tickets, j starting at 1)
+     */
+    private static double expectedTicketGain(PublicGameState gameState, PlayerState playerState){
+        StationConnectivity connectivity = playerState.stationConnectivityPlayer();
+        SortedBag<Ticket> unknownTickets = SortedBag.of(GameMap.active().tickets()).difference(playerState.tickets());
+        int n = unknownTickets.size();
+        int drawn = Math.min(Math.min(Constants.IN_GAME_TICKETS_COUNT, gameState.ticketsCount()), n);
+        if(drawn == 0) return 0;
+
+        long positiveTotal = 0;
+        int[] nonPositive = new int[n];
+        int m = 0;
+        for(Ticket ticket : unknownTickets){
+            int points = ticket.points(connectivity);
+            if(points > 0) positiveTotal += points;
+            else nonPositive[m++] = points;
+        }
+        Arrays.sort(nonPositive, 0, m); //the j-th best is at index m - j
+
+        double expected = (double) positiveTotal * drawn / n;
+        double draws = combinations(n, drawn);
+        for(int j=1;j<=m;j++) expected += nonPositive[m - j] * combinations(m - j, drawn - 1) / draws;
+        return expected;
+    }
+
+    /**
+     * @return the cards the player can not see : all the cards but the ones of the player and the face up cards
+     */
+    private static SortedBag<Card> unseenCards(PublicGameState gameState, PlayerState playerState){
+        return Constants.ALL_CARDS.difference(playerState.cards()).difference(SortedBag.of(gameState.cardState().faceUpCards()));
+    }
+
+    private static double combinations(int n, int k){
+        if(k < 0 || k > n) return 0;
+        double result = 1;
+        for(int i=0;i<k;i++) result = result * (n - i) / (i + 1);
+        return result;
+    }
+}
@@ -220,7 +220,7 @@ public final class MenuViewCreator extends Application {
      */
     private static void startSinglePlayerGame(String playerName){
         PlayerId.setNbrPlayer(NUMBER_PLAYER_SINGLE_GAME);
-        SortedBag<Ticket> tickets = SortedBag.of(ChMap.tickets());
+        SortedBag<Ticket> tickets = SortedBag.of(GameMap.active().tickets());
         Map<PlayerId, String> names =
                 Map.of(PLAYER_1, playerName, PLAYER_2, "Ordinateur");
         Map<PlayerId, Player> players =
@@ -0,0 +1,165 @@
+package ch.epfl.tchu.extension;
+
+import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.game.*;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * the network of routes a bot plans to claim to complete all its tickets at once, instead of one trip after the other.
+ * The network is an approximation of the cheapest Steiner tree connecting the stations of the tickets : the ticket the
+ * cheapest to connect to the network (a country ticket being connected by any of its trips) is added to it, the routes
+ * of the network then costing nothing, until no ticket can be added anymore with the cars left. This is done again
+ * starting from each of the tickets, the cheapest first, while the time budget is not over, and the network completing
+ * the most points for the fewest cars is kept.
+ * The network is kept from one turn to the other, and only computed again when the tickets of the bot change or when
+ * another player claims one of its routes.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class TicketPlanner {
+
+    private final Duration budget;
+
+    private SortedBag<Ticket> plannedTickets;
+    private List<Route> network;        //the routes of the network, including the ones already claimed by the bot
+
+    /**
+     * @param budget the time given to the computation of a network, the first ticket being always connected
+     */
+    public TicketPlanner(Duration budget){
+        this.budget = Objects.requireNonNull(budget);
+        this.network = List.of();
+    }
+
+    /**
+     * @param gameView the game as seen by the bot
+     * @return the routes of the network of the bot that are not claimed yet, in the order they were planned, an empty
+     * list if no ticket of the bot can be completed anymore
+     */
+    public List<Route> plannedRoutes(BotGameView gameView){
+        if(!gameView.tickets().equals(plannedTickets) || isBroken(gameView)){
+            plannedTickets = gameView.tickets();
+            network = bestNetwork(gameView);
+        }
+
+        List<Route> plannedRoutes = new ArrayList<>();
+        for(Route route : network){
+            if(gameView.routeOwner(route) == null) plannedRoutes.add(route);
+        }
+        return plannedRoutes;
+    }
+
+    /**
+     * @return true if another player has claimed a route of the network (or its twin, that can not be claimed anymore)
+     */
+    private boolean isBroken(BotGameView gameView){
+        for(Route route : network){
+            if(gameView.routeOwner(route) == gameView.playerId()) continue;
+            Route twin = route.getTwin();
+            if(gameView.routeOwner(route) != null || (twin != null && gameView.routeOwner(twin) != null)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * build a network starting from each uncompleted ticket while the budget allows it
+     */
+    private List<Route> bestNetwork(BotGameView gameView){
+        long deadline = System.nanoTime() + budget.toNanos();
+        StationDistances distances = gameView.distances();
+        List<Ticket> tickets = new ArrayList<>();
+        for(Ticket ticket : gameView.tickets().toSet()){
+            if(gameView.ticketPoints(ticket) < 0 && distances.isFeasible(ticket)) tickets.add(ticket);
+        }
+        //the cheapest tickets first, the networks starting from them being computed even if the budget is short
+        tickets.sort(Comparator.comparingInt(distances::cost));
+
+        Network best = null;
+        for(Ticket first : tickets){
+            Network candidate = new Network(gameView, first, deadline);
+            if(best == null || candidate.isBetterThan(best)) best = candidate;
+            if(System.nanoTime() > deadline) break;
+        }
+        return best == null ? List.of() : best.routes;
+    }
+
+    /**
+     * a network built greedily from a first ticket
+     */
+    private static final class Network {
+        private final List<Route> routes;
+        private int points;
+        private int cost;
+
+        private Network(BotGameView gameView, Ticket first, long deadline){
+            this.routes = new ArrayList<>();
+            List<Route> mapRoutes = GameMap.active().routes();
+            TrailPlanner planner = new TrailPlanner(mapRoutes);
+            for(Route route : mapRoutes){
+                PlayerId owner = gameView.routeOwner(route);
+                if(owner == gameView.playerId()) planner.claimedByPlayer(route);
+                else if(owner != null) planner.claimedByOther(route);
+            }
+
+            List<Ticket> remaining = new ArrayList<>(gameView.tickets().toSet());
+            remaining.removeIf(ticket -> gameView.ticketPoints(ticket) >= 0);
+            int carsLeft = gameView.carCount(gameView.playerId());
+            Ticket next = first;
+            while (next != null){
+                remaining.remove(next);
+                Trail trail = trailOf(planner, next);
+                int trailCost = trail.getTrail().isEmpty() ? -1 : planner.cost(trail);
+                if(trailCost >= 0 && trailCost <= carsLeft){
+                    for(Route route : trail.getTrail()){
+                        if(gameView.routeOwner(route) == gameView.playerId() || routes.contains(route)) continue;
+                        planner.claimedByPlayer(route);
+                        routes.add(route);
+                    }
+                    carsLeft -= trailCost;
+                    cost += trailCost;
+                    points += pointsOf(next, trail);
+                }
+
+                //the next ticket is the cheapest one to connect to the network
+                next = null;
+                int nextCost = Integer.MAX_VALUE;
+                if(System.nanoTime() > deadline) break;
+                for(Ticket ticket : remaining){
+                    Trail ticketTrail = trailOf(planner, ticket);
+                    if(ticketTrail.getTrail().isEmpty()) continue;
+                    int ticketCost = planner.cost(ticketTrail);
+                    if(ticketCost <= carsLeft && ticketCost < nextCost){
+                        next = ticket;
+                        nextCost = ticketCost;
+                    }
+                }
+            }
+        }
+
+        private boolean isBetterThan(Network that){
+            return points > that.points || (points == that.points && cost < that.cost);
+        }
+
+        private static Trail trailOf(TrailPlanner planner, Ticket ticket){
+            Set<Station> departures = new HashSet<>();
+            Set<Station> arrivals = new HashSet<>();
+            for(Trip trip : ticket.getTrip()){
+                departures.add(trip.from());
+                arrivals.add(trip.to());
+            }
+            return planner.shortestTrail(departures, arrivals);
+        }
+
+        /**
+         * the points of the trip of the ticket the trail completes
+         */
+        private static int pointsOf(Ticket ticket, Trail trail){
+            for(Trip trip : ticket.getTrip()){
+                if(trip.from() == trail.station1() && trip.to() == trail.station2()) return trip.points();
+            }
+            return 0;
+        }
+    }
+}
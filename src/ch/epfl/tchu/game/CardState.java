@@ -47,6 +47,17 @@ public final class CardState extends PublicCardState{
         return new CardState(deck.topCards(FACE_UP_CARDS_COUNT).toList(),deck.withoutTopCards(FACE_UP_CARDS_COUNT), SortedBag.of());
     }
 
+    /**
+     * @param faceUpCards the face-up cards
+     * @param deck the deck
+     * @param discards the discards
+     * @return the state of the cards made of the given ones (used to rebuild a state, see PackedGameState)
+     * @throws IllegalArgumentException if faceUpCards does not contain the right number of items (5)
+     */
+    static CardState of(List<Card> faceUpCards, Deck<Card> deck, SortedBag<Card> discards){
+        return new CardState(faceUpCards, deck, discards);
+    }
+
     /**
      * @param slot index of the face-up card to be replaced
      * @return a set of cards identical to the receiver (this), except that the face-up card in the index slot has been replaced
@@ -73,6 +84,22 @@ public final class CardState extends PublicCardState{
         return deck.topCard();
     }
 
+    /**
+     * @param index the position of a card from the top of the deck, 0 for the card on top
+     * @return the card
+     */
+    Card deckCard(int index){
+        return deck.cardAt(index);
+    }
+
+    /**
+     * @param card a type of card
+     * @return the number of cards of this type in the discards
+     */
+    int discardsCount(Card card){
+        return discards.countOf(card);
+    }
+
     /**
      * @return a set of cards identical to the receiver (this), but without the top card of the deck
      * @throws IllegalArgumentException if the deck is empty
@@ -20,6 +20,19 @@ public final class ChMap {
         return ALL_TICKETS;
     }
 
+    /**
+     * @return the map made of the stations, the routes and the tickets of ChMap, the default active map of the engine
+     * (see GameMap.active)
+     */
+    public static GameMap map() {
+        return MapHolder.MAP;
+    }
+
+    //the map is created at its first use, after the lists it is made of
+    private static final class MapHolder {
+        private static final GameMap MAP = GameMap.of(ALL_STATIONS, ALL_ROUTES, ALL_TICKETS);
+    }
+
     // Stations - cities
     private static final Station BAD = new Station(0, "Baden");
     private static final Station BAL = new Station(1, "Bâle");
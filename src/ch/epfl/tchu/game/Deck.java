@@ -36,6 +36,15 @@ public final class Deck<C extends Comparable<C>> {
         return new Deck<>(listCard);
     }
 
+    /**
+     * @param cards the cards of the deck, the first one being on top
+     * @param <C> card type
+     * @return a deck of the given cards, in the given order
+     */
+    static <C extends Comparable<C>> Deck<C> ofOrdered(List<C> cards){
+        return new Deck<>(cards);
+    }
+
     /**
      * @return  size of the deck (number of cards it contains)
      */
@@ -59,6 +68,14 @@ public final class Deck<C extends Comparable<C>> {
         return cards.get(0);            //supposes that the first card is the card from the top of the deck
     }
 
+    /**
+     * @param index the position of a card from the top of the deck, 0 for the card on top
+     * @return the card, without copying the cards like topCards
+     */
+    C cardAt(int index){
+        return cards.get(index);
+    }
+
     /**
      * @return a deck identical to the receiver (this) but without the card on top
      * @throws IllegalArgumentException if the deck is empty
@@ -5,6 +5,11 @@ import ch.epfl.tchu.SortedBag;
 import ch.epfl.tchu.gui.Info;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static ch.epfl.tchu.game.Constants.*;
 import static ch.epfl.tchu.game.Player.TurnKind.CLAIM_ROUTE;
@@ -24,19 +29,39 @@ public final class Game {
      * @param rng : Random
      */
     public static void play(Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, SortedBag<Ticket> tickets, Random rng){
+        play(players, playerNames, tickets, rng, new StateUpdates());
+    }
+
+    /**
+     * This method simulate the game in its entirety, counting the states sent to the players
+     * @param players : a map that join the Player with his PlayerId
+     * @param playerNames : a map that join the PlayerId with his name
+     * @param tickets : the initial deck of tickets of the game
+     * @param rng : Random
+     * @param updates : the states sent during the game, new for each game
+     */
+    public static void play(Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, SortedBag<Ticket> tickets, Random rng, StateUpdates updates){
         //lancement exception
         Preconditions.checkArgument(players.size() == PlayerId.getNbrPlayer() && playerNames.size()== PlayerId.getNbrPlayer());
 
         //===================
         //début de partie
         GameState gameState = GameState.initial(tickets, rng);
-        gameState = beginGame(gameState, players, playerNames);
+        gameState = beginGame(gameState, players, playerNames, updates);
+        MoveValidator validator = new MoveValidator(); //index des propriétaires des routes, mis à jour à chaque tour
 
         //===================
         //milieu de partie
+        int passedTurns = 0; //nombre de tours passés d'affilée, faute de coup légal
         do{
 
-            gameState = middleGame(gameState, players, playerNames, rng);
+            GameState previousState = gameState;
+            gameState = middleGame(gameState, players, playerNames, rng, validator, updates);
+            passedTurns = gameState == previousState ? passedTurns + 1 : 0; //l'état n'est inchangé que si le joueur a passé son tour
+            if(passedTurns == PlayerId.getNbrPlayer()){ //plus aucun joueur ne peut jouer, la partie se termine
+                endGame(gameState, players, playerNames, updates);
+                return;
+            }
 
             if(gameState.lastTurnBegins()){
                 infoForPlayers(players, new Info(playerNames.get(gameState.currentPlayerId())).lastTurnBegins(gameState.currentPlayerState().carCount())); //on informe que c'est le dernier tour
@@ -50,13 +75,13 @@ public final class Game {
         //dernier tour
         for(int i=0; i<PlayerId.getNbrPlayer(); i++){
             gameState = gameState.forNextTurn();
-            gameState = middleGame(gameState, players, playerNames, rng);
+            gameState = middleGame(gameState, players, playerNames, rng, validator, updates);
         }
 
 
         //===================
         //fin de partie
-        endGame(gameState, players, playerNames);
+        endGame(gameState, players, playerNames, updates);
 
 
     }
@@ -70,9 +95,12 @@ public final class Game {
      * @return the new GameState
      */
     public static GameState beginGame(GameState gameState, Map<PlayerId, Player> players, Map<PlayerId, String> playerNames){
+        return beginGame(gameState, players, playerNames, new StateUpdates());
+    }
+
+    private static GameState beginGame(GameState gameState, Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, StateUpdates updates){
         PlayerId firstPlayerId = gameState.currentPlayerId();
         Info info = new Info(playerNames.get(firstPlayerId));
-        Map<Player, SortedBag<Ticket>> initialTicketsPlayer = new HashMap<>(); //les billets (parmis les 5 piochés) que chaque joueur décident de garder au début de la partie
 
         //point 1
         players.forEach((playerId, player) -> player.initPlayers(playerId, playerNames));
@@ -81,26 +109,65 @@ public final class Game {
         infoForPlayers(players, info.willPlayFirst()); //on informe l'identité du premier joueur
 
         //point 3
-        for(Player player : players.values()){
-            player.setInitialTicketChoice(gameState.topTickets(INITIAL_TICKETS_COUNT));
+        Map<PlayerId, SortedBag<Ticket>> distributedTickets = new EnumMap<>(PlayerId.class);
+        for(Map.Entry<PlayerId, Player> player : players.entrySet()){
+            distributedTickets.put(player.getKey(), gameState.topTickets(INITIAL_TICKETS_COUNT));
+            player.getValue().setInitialTicketChoice(distributedTickets.get(player.getKey()));
             gameState = gameState.withoutTopTickets(INITIAL_TICKETS_COUNT);
         }
 
 
         //point 4
-        updateStateForPlayers(players, gameState); // on met à jour afin que les joueurs puissent avoir connaissance de leurs cartes initiales
-        for (Map.Entry<PlayerId, Player> p : players.entrySet()) {
-            initialTicketsPlayer.put(p.getValue(), p.getValue().chooseInitialTickets());
-            gameState = gameState.withInitiallyChosenTickets(p.getKey(), initialTicketsPlayer.get(p.getValue()));
+        updates.send(players, gameState); // on met à jour afin que les joueurs puissent avoir connaissance de leurs cartes initiales
+        Map<PlayerId, SortedBag<Ticket>> initialTicketsPlayer = chooseInitialTickets(players); //les billets (parmis les 5 piochés) que chaque joueur décident de garder, choisis par tous les joueurs en même temps
+        for (PlayerId playerId : PlayerId.getAllPlayer()) {
+            initialTicketsPlayer.put(playerId, MoveValidator.validTickets(distributedTickets.get(playerId), initialTicketsPlayer.get(playerId))); //un choix illégal est remplacé par tous les billets distribués
+            gameState = gameState.withInitiallyChosenTickets(playerId, initialTicketsPlayer.get(playerId)); //les choix sont appliqués dans l'ordre des joueurs
         }
 
         //point 5
-        players.forEach((playerId, player) -> infoForPlayers(players, new Info(playerNames.get(playerId)).keptTickets(initialTicketsPlayer.get(player).size()))); // on inform ici quels ticket chaque joueur a gardé
+        for (PlayerId playerId : PlayerId.getAllPlayer()) {
+            infoForPlayers(players, new Info(playerNames.get(playerId)).keptTickets(initialTicketsPlayer.get(playerId).size())); // on inform ici quels ticket chaque joueur a gardé
+        }
 
 
         return gameState;
     }
 
+    /**
+     * ask all the players at the same time which initial tickets they keep, the choices being independent from each other,
+     * so that the players do not wait for each other
+     * @param players : a map that join the Player with his PlayerId
+     * @return the tickets kept by each player
+     * @throws RuntimeException the exception thrown by a player, if any
+     */
+    private static Map<PlayerId, SortedBag<Ticket>> chooseInitialTickets(Map<PlayerId, Player> players){
+        ExecutorService executor = Executors.newFixedThreadPool(players.size(), r -> {
+            Thread thread = new Thread(r, "initial-tickets-choice");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<PlayerId, Future<SortedBag<Ticket>>> choices = new EnumMap<>(PlayerId.class);
+            players.forEach((playerId, player) -> choices.put(playerId, executor.submit(player::chooseInitialTickets)));
+
+            Map<PlayerId, SortedBag<Ticket>> initialTickets = new EnumMap<>(PlayerId.class);
+            for (Map.Entry<PlayerId, Future<SortedBag<Ticket>>> choice : choices.entrySet()) {
+                initialTickets.put(choice.getKey(), choice.getValue().get());
+            }
+            return initialTickets;
+        } catch (ExecutionException e) {
+            //the exception of the player is thrown as if it had been called on the thread of the game
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if(e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new Error(e.getCause());
+        } catch (InterruptedException e) {
+            throw new Error();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      *This method simulate the play of a player with his 3 choices during his tour
      * @param gameState : the state of the game in which the method is called
@@ -110,28 +177,44 @@ public final class Game {
      * @return the new GameState
      */
     public static GameState middleGame(GameState gameState, Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, Random rng){
-        updateStateForPlayers(players, gameState); // on met à jour afin que les joueurs puissent avoir connaissance du tour précèdent
+        return middleGame(gameState, players, playerNames, rng, new MoveValidator(), new StateUpdates());
+    }
+
+    /**
+     * the turn of a player, whose decisions are checked by the validator : an illegal decision is replaced by a legal
+     * fallback one (see MoveValidator)
+     * @param validator the validator of the game, updated with the routes claimed since its last turn
+     * @param updates the states sent during the game
+     * @return the new GameState
+     */
+    private static GameState middleGame(GameState gameState, Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, Random rng, MoveValidator validator, StateUpdates updates){
+        updates.send(players, gameState); // on met à jour afin que les joueurs puissent avoir connaissance du tour précèdent
         Player currentPlayer = players.get(gameState.currentPlayerId());
 
         Info infoCurrentPlayer = new Info(playerNames.get(gameState.currentPlayerId()));
         infoForPlayers(players, infoCurrentPlayer.canPlay()); //on informe les joueurs du nouveau tour
         Player.TurnKind nextTurn = currentPlayer.nextTurn();
-
+        validator.update(gameState);
+        if(!MoveValidator.isValidTurn(gameState, nextTurn)){
+            System.out.println("Illegal turn " + nextTurn + " of " + playerNames.get(gameState.currentPlayerId()) + ", the fallback turn is played");
+            return fallbackTurn(gameState, players, infoCurrentPlayer, rng);
+        }
 
         switch (nextTurn){
 
             case DRAW_TICKETS:
-                SortedBag<Ticket> ticketsPlayer = currentPlayer.chooseTickets(gameState.topTickets(IN_GAME_TICKETS_COUNT));
-                gameState = gameState.withChosenAdditionalTickets(gameState.topTickets(IN_GAME_TICKETS_COUNT), ticketsPlayer);
+                SortedBag<Ticket> drawnTickets = gameState.topTickets(Math.min(IN_GAME_TICKETS_COUNT, gameState.ticketsCount())); //il peut rester moins de billets que ceux à tirer
+                SortedBag<Ticket> ticketsPlayer = MoveValidator.validTickets(drawnTickets, currentPlayer.chooseTickets(drawnTickets));
+                gameState = gameState.withChosenAdditionalTickets(drawnTickets, ticketsPlayer);
 
-                infoForPlayers(players, infoCurrentPlayer.drewTickets(IN_GAME_TICKETS_COUNT)); //on informe le joueur tire des billets
+                infoForPlayers(players, infoCurrentPlayer.drewTickets(drawnTickets.size())); //on informe le joueur tire des billets
                 infoForPlayers(players, infoCurrentPlayer.keptTickets(ticketsPlayer.size())); //on informe que le joueur a gardé ces billets
                 break;
 
             case DRAW_CARDS:
                 for(int i=0; i<DISCARDABLE_TICKETS_COUNT; i++) {
                     gameState = gameState.withCardsDeckRecreatedIfNeeded(rng);
-                    int drawSlot = currentPlayer.drawSlot();
+                    int drawSlot = MoveValidator.validDrawSlot(gameState, currentPlayer.drawSlot()); //un emplacement illégal est remplacé par la pioche
                     if (drawSlot == Constants.DECK_SLOT) {
                         gameState = gameState.withBlindlyDrawnCard();
                         infoForPlayers(players, infoCurrentPlayer.drewBlindCard()); // on informe que le joueur courant a pris une carte non visible
@@ -141,7 +224,7 @@ public final class Game {
                         infoForPlayers(players, infoCurrentPlayer.drewVisibleCard(visibleCard)); // on informe que le joueur courant a pris une carte visible
                     }
                     if (i < DISCARDABLE_TICKETS_COUNT - 1) {
-                        updateStateForPlayers(players, gameState); //on met à jour afin que le joueur sache p.ex. quelle carte a remplacé la carte face visible qu'il a éventuellement tirée en premier,
+                        updates.send(players, gameState); //on met à jour afin que le joueur sache p.ex. quelle carte a remplacé la carte face visible qu'il a éventuellement tirée en premier,
                     }
                 }
                 break;
@@ -149,6 +232,11 @@ public final class Game {
             case CLAIM_ROUTE:
                 Route route = currentPlayer.claimedRoute();
                 SortedBag<Card> initialClaimCards = currentPlayer.initialClaimCards();
+                if(!validator.isValidClaim(gameState.currentPlayerState(), route, initialClaimCards)){
+                    System.out.println("Illegal claim of " + playerNames.get(gameState.currentPlayerId()) + ", the fallback turn is played");
+                    gameState = fallbackTurn(gameState, players, infoCurrentPlayer, rng);
+                    break;
+                }
 
                 if (route.level() == Route.Level.UNDERGROUND) {
                     infoForPlayers(players, infoCurrentPlayer.attemptsTunnelClaim(route, initialClaimCards)); //on informe que le joueur essaye de s'emparer d'un tunnel
@@ -169,7 +257,7 @@ public final class Game {
                     //On considère les cas possiles
                     if (additionalClaimCardsCount >= 1) {
                         List<SortedBag<Card>> options = gameState.currentPlayerState().possibleAdditionalCards(additionalClaimCardsCount,initialClaimCards,drawnCards);
-                        SortedBag<Card> choicePlayer = !options.isEmpty() ? currentPlayer.chooseAdditionalCards(options) : SortedBag.of();
+                        SortedBag<Card> choicePlayer = !options.isEmpty() ? MoveValidator.validAdditionalCards(options, currentPlayer.chooseAdditionalCards(options)) : SortedBag.of(); //un choix illégal est un abandon
                         if(!choicePlayer.isEmpty()){
                             SortedBag<Card> allCards = initialClaimCards.union(choicePlayer);
                             gameState = gameState.withClaimedRoute(route, allCards);
@@ -204,6 +292,19 @@ public final class Game {
     }
 
 
+    /**
+     * the turn played instead of a turn whose decision is illegal : two cards are drawn from the deck for the player,
+     * without asking him anything, or the turn is passed if no card can be drawn
+     * @return the new GameState
+     */
+    private static GameState fallbackTurn(GameState gameState, Map<PlayerId, Player> players, Info infoCurrentPlayer, Random rng){
+        if(!gameState.canDrawCards()) return gameState; //le joueur passe son tour
+        for(int i=0; i<DISCARDABLE_TICKETS_COUNT; i++) {
+            gameState = gameState.withCardsDeckRecreatedIfNeeded(rng).withBlindlyDrawnCard();
+            infoForPlayers(players, infoCurrentPlayer.drewBlindCard()); // on informe que le joueur courant a pris une carte non visible
+        }
+        return gameState;
+    }
 
     /**
      *This method simulate the end of the Game
@@ -212,8 +313,12 @@ public final class Game {
      * @param playerNames : a map that join the PlayerId with his name
      */
     public static void endGame(GameState gameState, Map<PlayerId, Player> players, Map<PlayerId, String> playerNames){
+        endGame(gameState, players, playerNames, new StateUpdates());
+    }
 
-        updateStateForPlayers(players, gameState); //juste avant d'informer les joueurs du résultat final de la partie, afin qu'ils connaissent l'état dans lequel la partie s'est effectivement terminé.
+    private static void endGame(GameState gameState, Map<PlayerId, Player> players, Map<PlayerId, String> playerNames, StateUpdates updates){
+
+        updates.send(players, gameState); //juste avant d'informer les joueurs du résultat final de la partie, afin qu'ils connaissent l'état dans lequel la partie s'est effectivement terminé.
 
         Map<PlayerId, Integer> finalPointsMap = new HashMap<>();
         Map<PlayerId, Trail> longestTrailMap = new HashMap<>();
@@ -290,12 +395,89 @@ public final class Game {
     }
 
     /**
-     * This method updated the state of the players by the state of the game
-     * @param players : a map that join the Player with his PlayerId
-     * @param newState : the new State of the Game
+     * the states sent to the players during one game : the last one sent to each player, so that a state he already
+     * knows is not sent again, and the numbers of states sent and not sent, for monitoring. The states are only used by
+     * the thread of the game, the numbers can be read by any thread during the game
+     */
+    public static final class StateUpdates {
+        private final Map<PlayerId, SentState> lastSent = new EnumMap<>(PlayerId.class);
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong suppressed = new AtomicLong();
+
+        /**
+         * This method updated the state of the players by the state of the game
+         * @param players : a map that join the Player with his PlayerId
+         * @param newState : the new State of the Game
+         */
+        private void send(Map<PlayerId, Player> players, GameState newState){
+            players.forEach((playerId, player) -> {
+                PlayerState ownState = newState.playerState(playerId);
+                SentState last = lastSent.get(playerId);
+                if(last != null && last.isSameAs(newState, ownState)){ //le joueur connaît déjà cet état
+                    suppressed.incrementAndGet();
+                    return;
+                }
+                lastSent.put(playerId, new SentState(newState, ownState));
+                sent.incrementAndGet();
+                player.updateState(newState, ownState);
+            });
+        }
+
+        /**
+         * @return the number of states sent to the players
+         */
+        public long sent(){
+            return sent.get();
+        }
+
+        /**
+         * @return the number of states that have not been sent to a player, because the player already knew them
+         */
+        public long suppressed(){
+            return suppressed.get();
+        }
+    }
+
+    /**
+     * state last sent to a player : the public state of the game and the state of the player
      */
-    private static void updateStateForPlayers(Map<PlayerId, Player> players, GameState newState){
-        players.forEach((playerId, player) -> player.updateState(newState, newState.playerState(playerId)));
+    private static final class SentState {
+        private final PublicGameState gameState;
+        private final PlayerState ownState;
+
+        private SentState(PublicGameState gameState, PlayerState ownState){
+            this.gameState = gameState;
+            this.ownState = ownState;
+        }
+
+        /**
+         * @return true if the given states contain exactly the same information as the ones sent
+         */
+        private boolean isSameAs(PublicGameState newGameState, PlayerState newOwnState){
+            if(gameState == newGameState && ownState == newOwnState) return true; //les états sont immuables
+
+            PublicCardState cards = gameState.cardState();
+            PublicCardState newCards = newGameState.cardState();
+            if(gameState.ticketsCount() != newGameState.ticketsCount()
+                    || gameState.currentPlayerId() != newGameState.currentPlayerId()
+                    || gameState.lastPlayer() != newGameState.lastPlayer()
+                    || cards.deckSize() != newCards.deckSize()
+                    || cards.discardsSize() != newCards.discardsSize()
+                    || !cards.faceUpCards().equals(newCards.faceUpCards()))
+                return false;
+
+            for(PlayerId playerId : PlayerId.getAllPlayer()){
+                if(!isSamePublicState(gameState.playerState(playerId), newGameState.playerState(playerId))) return false;
+            }
+            return ownState.tickets().equals(newOwnState.tickets()) && ownState.cards().equals(newOwnState.cards());
+        }
+
+        private static boolean isSamePublicState(PublicPlayerState state, PublicPlayerState newState){
+            return state == newState
+                    || (state.ticketCount() == newState.ticketCount()
+                        && state.cardCount() == newState.cardCount()
+                        && state.routes().equals(newState.routes()));
+        }
     }
 
 
@@ -0,0 +1,178 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+
+import java.util.*;
+
+/**
+ * a map of the game : its stations, its routes and its tickets, with the indexes the engine needs to work on any map
+ * (the index of each route in the list of the routes, and the index of its twin).
+ * The stations of a map are numbered densely : the id of each station is its index in the list of the stations.
+ * The map used by the engine is the active map, ChMap by default, which can be replaced by another one (loaded by
+ * MapFile for example) once, before the engine uses it : the tables of the engine being computed from it, it can not
+ * change afterwards. The views of the interface (the positions of the routes and the background image) only exist for
+ * ChMap.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class GameMap {
+
+    /**
+     * returned by routeIndex for a route that is not one of the map, and by twinIndex for a route without twin
+     */
+    public final static int NO_ROUTE = -1;
+    /**
+     * returned by ticketIndex for a ticket that is not one of the map
+     */
+    public final static int NO_TICKET = -1;
+
+    private final static Object ACTIVE_LOCK = new Object();
+    private static volatile GameMap active;    //null until it is set or used for the first time
+
+    private final List<Station> stations;
+    private final List<Route> routes;
+    private final List<Ticket> tickets;
+    private final Map<Route, Integer> routeIndexes;
+    private final Map<Ticket, Integer> ticketIndexes;
+    private final int[] twins;                 //index of the twin of each route, NO_ROUTE if none
+
+    private GameMap(List<Station> stations, List<Route> routes, List<Ticket> tickets){
+        this.stations = List.copyOf(stations);
+        this.routes = List.copyOf(routes);
+        this.tickets = List.copyOf(tickets);
+
+        Map<Route, Integer> routeIndexes = new HashMap<>();
+        for(int i=0;i<this.routes.size();i++) routeIndexes.put(this.routes.get(i), i);
+        this.routeIndexes = Map.copyOf(routeIndexes);
+
+        Map<Ticket, Integer> ticketIndexes = new HashMap<>();
+        for(int i=0;i<this.tickets.size();i++) ticketIndexes.put(this.tickets.get(i), i);
+        this.ticketIndexes = Map.copyOf(ticketIndexes);
+
+        //the twin of a route is the first other route between the same two stations, like in Route.getTwin
+        Map<Long, List<Integer>> routesByStations = new HashMap<>();
+        for(int i=0;i<this.routes.size();i++) routesByStations.computeIfAbsent(stationsKey(this.routes.get(i)), k -> new ArrayList<>(2)).add(i);
+        this.twins = new int[this.routes.size()];
+        for(int i=0;i<this.routes.size();i++){
+            twins[i] = NO_ROUTE;
+            for(int other : routesByStations.get(stationsKey(this.routes.get(i)))){
+                if(other != i){
+                    twins[i] = other;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param stations the stations, the id of each one being its index in the list
+     * @param routes the routes, between stations of the map and with distinct ids
+     * @param tickets the tickets, whose trips are between stations of the map
+     * @return the map
+     * @throws IllegalArgumentException if the id of a station is not its index, if a route or a trip has a station that
+     * is not one of the map, or if two routes have the same id
+     */
+    public static GameMap of(List<Station> stations, List<Route> routes, List<Ticket> tickets){
+        for(int i=0;i<stations.size();i++) Preconditions.checkArgument(stations.get(i).id() == i);
+        Set<String> routeIds = new HashSet<>();
+        for(Route route : routes){
+            Preconditions.checkArgument(isStationOf(stations, route.station1()) && isStationOf(stations, route.station2()));
+            Preconditions.checkArgument(routeIds.add(route.id()));
+        }
+        for(Ticket ticket : tickets){
+            for(Trip trip : ticket.getTrip()) Preconditions.checkArgument(isStationOf(stations, trip.from()) && isStationOf(stations, trip.to()));
+        }
+        return new GameMap(stations, routes, tickets);
+    }
+
+    /**
+     * @return the map used by the engine, ChMap if none has been set
+     */
+    public static GameMap active(){
+        GameMap map = active;
+        if(map != null) return map;
+        synchronized (ACTIVE_LOCK){
+            if(active == null) active = ChMap.map();
+            return active;
+        }
+    }
+
+    /**
+     * replace ChMap by the given map as the map used by the engine (can only be called once, before the engine is used)
+     * @param map the map
+     * @throws IllegalStateException if the active map has already been set or used
+     */
+    public static void setActive(GameMap map){
+        Objects.requireNonNull(map);
+        synchronized (ACTIVE_LOCK){
+            if(active != null) throw new IllegalStateException("the active map has already been set or used");
+            active = map;
+        }
+    }
+
+    /**
+     * @return the stations, the id of each one being its index
+     */
+    public List<Station> stations(){
+        return stations;
+    }
+
+    /**
+     * @return the routes
+     */
+    public List<Route> routes(){
+        return routes;
+    }
+
+    /**
+     * @return the tickets
+     */
+    public List<Ticket> tickets(){
+        return tickets;
+    }
+
+    /**
+     * @param route a route
+     * @return its index in routes(), NO_ROUTE if it is null or not one of the map
+     */
+    public int routeIndex(Route route){
+        Integer index = route == null ? null : routeIndexes.get(route);
+        return index == null ? NO_ROUTE : index;
+    }
+
+    /**
+     * @param ticket a ticket
+     * @return its index in tickets(), NO_TICKET if it is null or not one of the map
+     */
+    public int ticketIndex(Ticket ticket){
+        Integer index = ticket == null ? null : ticketIndexes.get(ticket);
+        return index == null ? NO_TICKET : index;
+    }
+
+    /**
+     * @param routeIndex the index of a route in routes()
+     * @return the index of its twin (the route between the same stations), NO_ROUTE if it has none
+     */
+    public int twinIndex(int routeIndex){
+        return twins[routeIndex];
+    }
+
+    /**
+     * @param route a route
+     * @return its twin, null if it has none or if the route is not one of the map
+     */
+    public Route twin(Route route){
+        int index = routeIndex(route);
+        return index == NO_ROUTE || twins[index] == NO_ROUTE ? null : routes.get(twins[index]);
+    }
+
+    private static boolean isStationOf(List<Station> stations, Station station){
+        return station.id() < stations.size() && stations.get(station.id()) == station;
+    }
+
+    private static long stationsKey(Route route){
+        int id1 = route.station1().id();
+        int id2 = route.station2().id();
+        return (long) Math.min(id1, id2) << Integer.SIZE | Math.max(id1, id2);
+    }
+}
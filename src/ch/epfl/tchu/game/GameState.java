@@ -17,6 +17,7 @@ public final class GameState extends PublicGameState{
     private final Map<PlayerId, PlayerState> globalPlayerState;
     private final CardState cardState;
     private final Deck<Ticket> ticketsDeck;
+    private final long zobristKey;
 
     /**
      * @param cardState original private state of the card
@@ -43,12 +44,14 @@ public final class GameState extends PublicGameState{
 
     /**
      * constructor
+     * @param zobristKey the key of the state, updated by the transitions from the key of the previous state
      */
-    private GameState(Deck<Ticket> ticketsDeck, CardState cardState, PlayerId currentPlayerId, Map<PlayerId, PlayerState> globalPlayerState, PlayerId lastPlayer){
+    private GameState(Deck<Ticket> ticketsDeck, CardState cardState, PlayerId currentPlayerId, Map<PlayerId, PlayerState> globalPlayerState, PlayerId lastPlayer, long zobristKey){
         super(ticketsDeck.size(),makeCardStatePublic(cardState),currentPlayerId,makePlayerStatePublic(globalPlayerState),lastPlayer);
         this.globalPlayerState = Map.copyOf(globalPlayerState);
         this.cardState = cardState;
         this.ticketsDeck = ticketsDeck;
+        this.zobristKey = zobristKey;
     }
 
     /**
@@ -67,7 +70,22 @@ public final class GameState extends PublicGameState{
             cardsDeck = cardsDeck.withoutTopCards(INITIAL_CARDS_COUNT);
         }
 
-        return new GameState(ticketDeck,CardState.of(cardsDeck),PlayerId.getAllPlayer().get(rng.nextInt(PlayerId.getNbrPlayer())),playerMap,null);
+        CardState cardState = CardState.of(cardsDeck);
+        PlayerId firstPlayer = PlayerId.getAllPlayer().get(rng.nextInt(PlayerId.getNbrPlayer()));
+        return new GameState(ticketDeck,cardState,firstPlayer,playerMap,null,ZobristKeys.of(cardState,firstPlayer,playerMap,null));
+    }
+
+    /**
+     * @param ticketsDeck the deck of tickets
+     * @param cardState the state of the cards
+     * @param currentPlayerId the current player
+     * @param playerStates the state of each player
+     * @param lastPlayer the last player, null if the last turn has not begun
+     * @return the state made of the given parts, with its Zobrist key computed again (used to rebuild a state, see
+     * PackedGameState)
+     */
+    static GameState of(Deck<Ticket> ticketsDeck, CardState cardState, PlayerId currentPlayerId, Map<PlayerId, PlayerState> playerStates, PlayerId lastPlayer){
+        return new GameState(ticketsDeck,cardState,currentPlayerId,playerStates,lastPlayer,ZobristKeys.of(cardState,currentPlayerId,playerStates,lastPlayer));
     }
 
     /**
@@ -88,6 +106,29 @@ public final class GameState extends PublicGameState{
         return globalPlayerState.get(currentPlayerId());
     }
 
+    /**
+     * @return the 64 bits Zobrist key of the state, made of the owners of the routes, the number of cards of each type of
+     * each player, the face up cards, the current player and the last player (two states that only differ by their decks,
+     * discards or tickets have the same key)
+     */
+    public long zobristKey(){
+        return zobristKey;
+    }
+
+    /**
+     * @return the deck of tickets
+     */
+    Deck<Ticket> ticketsDeck(){
+        return ticketsDeck;
+    }
+
+    /**
+     * @return the private state of the cards, with the deck and the discards
+     */
+    CardState privateCardState(){
+        return cardState;
+    }
+
     /**
      * @param count nbr of ticket to return
      * @return the count tickets from the top of the deck
@@ -105,7 +146,7 @@ public final class GameState extends PublicGameState{
      */
     public GameState withoutTopTickets(int count){
         Preconditions.checkArgument(count>=0 && count <=ticketsDeck.size());
-        return new GameState(ticketsDeck.withoutTopCards(count),cardState,currentPlayerId(),globalPlayerState,lastPlayer());
+        return new GameState(ticketsDeck.withoutTopCards(count),cardState,currentPlayerId(),globalPlayerState,lastPlayer(),zobristKey);
     }
 
     /**
@@ -123,7 +164,7 @@ public final class GameState extends PublicGameState{
      */
     public GameState withoutTopCard(){
         Preconditions.checkArgument(!cardState.isDeckEmpty());
-        return new GameState(ticketsDeck,cardState.withoutTopDeckCard(),currentPlayerId(),globalPlayerState,lastPlayer());
+        return new GameState(ticketsDeck,cardState.withoutTopDeckCard(),currentPlayerId(),globalPlayerState,lastPlayer(),zobristKey);
     }
 
     /**
@@ -131,7 +172,7 @@ public final class GameState extends PublicGameState{
      * @return a state identical to the receiver but with the given cards added to the discard
      */
     public GameState withMoreDiscardedCards(SortedBag<Card> discardedCards){
-        return new GameState(ticketsDeck,cardState.withMoreDiscardedCards(discardedCards),currentPlayerId(),globalPlayerState,lastPlayer());
+        return new GameState(ticketsDeck,cardState.withMoreDiscardedCards(discardedCards),currentPlayerId(),globalPlayerState,lastPlayer(),zobristKey);
     }
 
     /**
@@ -140,13 +181,13 @@ public final class GameState extends PublicGameState{
      */
     public GameState withCardsDeckRecreatedIfNeeded(Random rng){
         if(!cardState.isDeckEmpty()) return this;
-        return new GameState(ticketsDeck,cardState.withDeckRecreatedFromDiscards(rng),currentPlayerId(),globalPlayerState,lastPlayer());
+        return new GameState(ticketsDeck,cardState.withDeckRecreatedFromDiscards(rng),currentPlayerId(),globalPlayerState,lastPlayer(),zobristKey);
     }
 
     private GameState withPlayerAddedTickets(PlayerId playerId, SortedBag<Ticket> ticketsToAdd){
         EnumMap<PlayerId, PlayerState> newGlobalPlayerState = new EnumMap<>(globalPlayerState);
         newGlobalPlayerState.replace(playerId,globalPlayerState.get(playerId).withAddedTickets(ticketsToAdd));
-        return new GameState(ticketsDeck,cardState,currentPlayerId(),newGlobalPlayerState,lastPlayer());
+        return new GameState(ticketsDeck,cardState,currentPlayerId(),newGlobalPlayerState,lastPlayer(),zobristKey);
     }
 
     /**
@@ -175,7 +216,8 @@ public final class GameState extends PublicGameState{
     private GameState withPlayerAddedCards(PlayerId playerId, Card cardToAdd){
         EnumMap<PlayerId, PlayerState> newGlobalPlayerState = new EnumMap<>(globalPlayerState);
         newGlobalPlayerState.replace(playerId,globalPlayerState.get(playerId).withAddedCard(cardToAdd));
-        return new GameState(ticketsDeck,cardState,currentPlayerId(),newGlobalPlayerState,lastPlayer());
+        long newKey = zobristKey ^ ZobristKeys.cardCountChange(playerId,globalPlayerState.get(playerId).cards(),cardToAdd,1);
+        return new GameState(ticketsDeck,cardState,currentPlayerId(),newGlobalPlayerState,lastPlayer(),newKey);
     }
 
     /**
@@ -185,7 +227,9 @@ public final class GameState extends PublicGameState{
      * @throws IllegalArgumentException if it is not possible to draw cards, i.e. if canDrawCards returns false
      */
     public GameState withDrawnFaceUpCard(int slot){
-        return new GameState(ticketsDeck,cardState.withDrawnFaceUpCard(slot),currentPlayerId(),globalPlayerState,lastPlayer()).withPlayerAddedCards(currentPlayerId(),cardState.faceUpCard(slot));
+        CardState newCardState = cardState.withDrawnFaceUpCard(slot);
+        long newKey = zobristKey ^ ZobristKeys.faceUpCard(slot,cardState.faceUpCard(slot)) ^ ZobristKeys.faceUpCard(slot,newCardState.faceUpCard(slot));
+        return new GameState(ticketsDeck,newCardState,currentPlayerId(),globalPlayerState,lastPlayer(),newKey).withPlayerAddedCards(currentPlayerId(),cardState.faceUpCard(slot));
     }
 
     /**
@@ -193,7 +237,7 @@ public final class GameState extends PublicGameState{
      * @throws IllegalArgumentException if it is not possible to draw cards, i.e. if canDrawCards returns false,
      */
     public GameState withBlindlyDrawnCard(){
-        return new GameState(ticketsDeck,cardState.withoutTopDeckCard(),currentPlayerId(),globalPlayerState,lastPlayer()).withPlayerAddedCards(currentPlayerId(),cardState.topDeckCard());
+        return new GameState(ticketsDeck,cardState.withoutTopDeckCard(),currentPlayerId(),globalPlayerState,lastPlayer(),zobristKey).withPlayerAddedCards(currentPlayerId(),cardState.topDeckCard());
     }
 
     /**
@@ -204,7 +248,12 @@ public final class GameState extends PublicGameState{
     public GameState withClaimedRoute(Route route, SortedBag<Card> cards){
         EnumMap<PlayerId, PlayerState> newGlobalPlayerState = new EnumMap<>(globalPlayerState);
         newGlobalPlayerState.replace(currentPlayerId(),globalPlayerState.get(currentPlayerId()).withClaimedRoute(route,cards));
-        return new GameState(ticketsDeck,cardState.withMoreDiscardedCards(cards),currentPlayerId(),newGlobalPlayerState,lastPlayer());
+        long newKey = zobristKey ^ ZobristKeys.routeOwner(route,currentPlayerId());
+        SortedBag<Card> hand = globalPlayerState.get(currentPlayerId()).cards();
+        for(Card card : cards.toSet()){
+            newKey ^= ZobristKeys.cardCountChange(currentPlayerId(),hand,card,-cards.countOf(card));
+        }
+        return new GameState(ticketsDeck,cardState.withMoreDiscardedCards(cards),currentPlayerId(),newGlobalPlayerState,lastPlayer(),newKey);
     }
 
     /**
@@ -220,7 +269,10 @@ public final class GameState extends PublicGameState{
      * i.e. returns a state identical to the receiver except that the current player is the one following the current player; moreover, if lastTurnBegins returns true, the current player becomes the last player.
      */
     public GameState forNextTurn(){
-        return new GameState(ticketsDeck,cardState,currentPlayerId().next(),globalPlayerState,lastTurnBegins() ? currentPlayerId() : lastPlayer());
+        PlayerId newLastPlayer = lastTurnBegins() ? currentPlayerId() : lastPlayer();
+        long newKey = zobristKey ^ ZobristKeys.currentPlayer(currentPlayerId()) ^ ZobristKeys.currentPlayer(currentPlayerId().next())
+                ^ ZobristKeys.lastPlayer(lastPlayer()) ^ ZobristKeys.lastPlayer(newLastPlayer);
+        return new GameState(ticketsDeck,cardState,currentPlayerId().next(),globalPlayerState,newLastPlayer,newKey);
     }
 
 
@@ -0,0 +1,262 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+import java.util.*;
+
+/**
+ * the actions the current player can do in a state of the game : the routes he can claim (as a set of bits indexed like
+ * the routes of the active map), the sets of initial cards he can use for each of them (as a mask of bits indexed like the list given
+ * by Route.possibleClaimCards()), and whether he can draw tickets or cards, and from which slots.
+ * A route can be claimed if neither it nor its twin has an owner, and if the player has the cars and the cards to claim it.
+ * All the tables depending only on the active map (see GameMap) are computed once, and update reuses the arrays of the instance, so it does not
+ * allocate anything : an instance can be updated with each new state, but it is not thread safe.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class LegalMoves {
+
+    /**
+     * the bit of the deck in the mask of the draw slots, the bit of a face up card being its slot
+     */
+    public final static int DECK_SLOT_BIT = Constants.FACE_UP_CARDS_COUNT;
+
+    /**
+     * returned by routeIndex for a route that is not one of the active map, and by twinIndex for a route without twin
+     */
+    final static int NO_ROUTE = GameMap.NO_ROUTE;
+    /**
+     * returned by claimOption for cards that can not be used to claim the route
+     */
+    final static int NO_OPTION = -1;
+
+    private final static int NO_CARD = -1;
+    private final static PlayerId[] PLAYER_IDS = PlayerId.values();  //all the ids, getAllPlayer() copying its list
+    private final static GameMap MAP = GameMap.active();
+    private final static List<Route> ROUTES = MAP.routes();
+    private final static List<List<SortedBag<Card>>> CLAIM_CARDS = claimCards();
+    //for each set of initial cards of each route : its number of locomotives, its type of car and its number of cars
+    private final static int[][] CLAIM_LOCOMOTIVES = new int[ROUTES.size()][];
+    private final static int[][] CLAIM_CAR_TYPES = new int[ROUTES.size()][];
+    private final static int[][] CLAIM_CAR_COUNTS = new int[ROUTES.size()][];
+    static {
+        for(int r=0;r<ROUTES.size();r++){
+            List<SortedBag<Card>> options = CLAIM_CARDS.get(r);
+            CLAIM_LOCOMOTIVES[r] = new int[options.size()];
+            CLAIM_CAR_TYPES[r] = new int[options.size()];
+            CLAIM_CAR_COUNTS[r] = new int[options.size()];
+            for(int i=0;i<options.size();i++){
+                SortedBag<Card> option = options.get(i);
+                CLAIM_LOCOMOTIVES[r][i] = option.countOf(Card.LOCOMOTIVE);
+                CLAIM_CAR_TYPES[r][i] = NO_CARD;
+                for(Card car : Card.CARS){
+                    if(option.countOf(car) > 0){
+                        CLAIM_CAR_TYPES[r][i] = car.ordinal();
+                        CLAIM_CAR_COUNTS[r][i] = option.countOf(car);
+                    }
+                }
+            }
+        }
+    }
+
+    private final boolean[] claimed;
+    private final int[] handCounts;             //number of cards of each type of the player, indexed by ordinal
+    private final BitSet claimableRoutes;
+    private final long[] claimCardsMasks;       //per route, bit i set if the i-th possible set of initial cards can be used
+    private boolean canDrawTickets;
+    private boolean canDrawCards;
+
+    /**
+     * moves of a state where nothing can be done, until the first update
+     */
+    public LegalMoves(){
+        this.claimed = new boolean[ROUTES.size()];
+        this.handCounts = new int[Card.COUNT];
+        this.claimableRoutes = new BitSet(ROUTES.size());
+        this.claimCardsMasks = new long[ROUTES.size()];
+    }
+
+    /**
+     * compute the actions the current player can do
+     * @param gameState the public state of the game
+     * @param playerState the state of the current player
+     */
+    public void update(PublicGameState gameState, PlayerState playerState){
+        Arrays.fill(claimed, false);
+        for(PlayerId player : PLAYER_IDS){
+            PublicPlayerState state = gameState.playerState(player);
+            if(state == null) continue; //the player does not take part in the game
+            List<Route> routes = state.routes();
+            for(int i=0;i<routes.size();i++) claimed[MAP.routeIndex(routes.get(i))] = true;
+        }
+
+        SortedBag<Card> cards = playerState.cards();
+        for(int c=0;c<Card.COUNT;c++) handCounts[c] = cards.countOf(Card.ALL.get(c));
+        int locomotives = handCounts[Card.LOCOMOTIVE.ordinal()];
+        int carCount = playerState.carCount();
+
+        claimableRoutes.clear();
+        for(int r=0;r<ROUTES.size();r++){
+            long mask = 0;
+            if(!claimed[r] && (MAP.twinIndex(r) == NO_ROUTE || !claimed[MAP.twinIndex(r)]) && ROUTES.get(r).length() <= carCount){
+                int[] routeLocomotives = CLAIM_LOCOMOTIVES[r];
+                int[] routeCarTypes = CLAIM_CAR_TYPES[r];
+                int[] routeCarCounts = CLAIM_CAR_COUNTS[r];
+                for(int i=0;i<routeLocomotives.length;i++){
+                    if(routeLocomotives[i] <= locomotives
+                            && (routeCarTypes[i] == NO_CARD || routeCarCounts[i] <= handCounts[routeCarTypes[i]])) mask |= 1L << i;
+                }
+            }
+            claimCardsMasks[r] = mask;
+            if(mask != 0) claimableRoutes.set(r);
+        }
+
+        canDrawTickets = gameState.canDrawTickets();
+        canDrawCards = gameState.canDrawCards();
+    }
+
+    /**
+     * @return the indexes in the routes of the active map of the routes the player can claim (the returned set must not be modified)
+     */
+    public BitSet claimableRoutes(){
+        return claimableRoutes;
+    }
+
+    /**
+     * @param routeIndex the index of a route in the routes of the active map
+     * @return true if the player can claim the route
+     */
+    public boolean isClaimable(int routeIndex){
+        return claimCardsMasks[routeIndex] != 0;
+    }
+
+    /**
+     * @param routeIndex the index of a route in the routes of the active map
+     * @return the mask of the sets of initial cards the player can use to claim the route, bit i standing for the i-th
+     * set of claimCardsOptions(routeIndex), 0 if the route can not be claimed
+     */
+    public long claimCardsMask(int routeIndex){
+        return claimCardsMasks[routeIndex];
+    }
+
+    /**
+     * @param route a route of the active map
+     * @param initialCards a set of initial cards
+     * @return true if the player can try to claim the route with these initial cards
+     */
+    public boolean isValidClaim(Route route, SortedBag<Card> initialCards){
+        int routeIndex = routeIndex(route);
+        int option = routeIndex == NO_ROUTE ? NO_OPTION : claimOption(routeIndex, initialCards);
+        return option != NO_OPTION && (claimCardsMasks[routeIndex] & 1L << option) != 0;
+    }
+
+    /**
+     * @return true if the player can draw tickets
+     */
+    public boolean canDrawTickets(){
+        return canDrawTickets;
+    }
+
+    /**
+     * @return true if the player can draw cards
+     */
+    public boolean canDrawCards(){
+        return canDrawCards;
+    }
+
+    /**
+     * @return the mask of the slots the player can draw a card from, bit i standing for the face up card of slot i and
+     * bit DECK_SLOT_BIT for the deck
+     */
+    public int drawSlots(){
+        return canDrawCards ? (1 << (DECK_SLOT_BIT + 1)) - 1 : 0;
+    }
+
+    /**
+     * @param slot a slot, the one of a face up card or Constants.DECK_SLOT
+     * @return true if the player can draw a card from the slot
+     */
+    public boolean isValidDrawSlot(int slot){
+        if(slot == Constants.DECK_SLOT) return (drawSlots() & 1 << DECK_SLOT_BIT) != 0;
+        return slot >= 0 && slot < Constants.FACE_UP_CARDS_COUNT && (drawSlots() & 1 << slot) != 0;
+    }
+
+    /**
+     * @param route a route of the active map
+     * @return its index in the routes of the active map
+     * @throws IllegalArgumentException if the route is not one of the active map
+     */
+    public static int indexOf(Route route){
+        int index = MAP.routeIndex(route);
+        Preconditions.checkArgument(index != NO_ROUTE);
+        return index;
+    }
+
+    /**
+     * @param routeIndex the index of a route in the routes of the active map
+     * @return the sets of initial cards that can be used to claim the route, in the order of Route.possibleClaimCards()
+     */
+    public static List<SortedBag<Card>> claimCardsOptions(int routeIndex){
+        return CLAIM_CARDS.get(routeIndex);
+    }
+
+    /**
+     * @param route a route
+     * @return its index in the routes of the active map, NO_ROUTE if it is null or not one of the active map
+     */
+    static int routeIndex(Route route){
+        return MAP.routeIndex(route);
+    }
+
+    /**
+     * @param routeIndex the index of a route in the routes of the active map
+     * @return the index of its twin, NO_ROUTE if it has none
+     */
+    static int twinIndex(int routeIndex){
+        return MAP.twinIndex(routeIndex);
+    }
+
+    /**
+     * @param routeIndex the index of a route in the routes of the active map
+     * @param cards a set of cards
+     * @return the index of the cards in claimCardsOptions(routeIndex), found from the number of locomotives and of cars
+     * of the cards without comparing them to each option, NO_OPTION if they can not be used to claim the route
+     */
+    static int claimOption(int routeIndex, SortedBag<Card> cards){
+        if(cards == null || cards.size() != ROUTES.get(routeIndex).length()) return NO_OPTION;
+        int locomotives = cards.countOf(Card.LOCOMOTIVE);
+        int carType = NO_CARD;
+        for(Card car : Card.CARS){
+            if(cards.countOf(car) == 0) continue;
+            if(carType != NO_CARD) return NO_OPTION; //the cars of a claim are all of the same type
+            carType = car.ordinal();
+        }
+
+        int[] routeLocomotives = CLAIM_LOCOMOTIVES[routeIndex];
+        int[] routeCarTypes = CLAIM_CAR_TYPES[routeIndex];
+        for(int i=0;i<routeLocomotives.length;i++){
+            //the size being the length of the route, the numbers of locomotives and the types of car are enough
+            if(routeLocomotives[i] == locomotives && routeCarTypes[i] == carType) return i;
+        }
+        return NO_OPTION;
+    }
+
+    /**
+     * @param routeIndex the index of a route in the routes of the active map
+     * @param option the index of a set of initial cards in claimCardsOptions(routeIndex)
+     * @param cards the cards of a player
+     * @return true if the player has the cards of the option
+     */
+    static boolean hasClaimCards(int routeIndex, int option, SortedBag<Card> cards){
+        int carType = CLAIM_CAR_TYPES[routeIndex][option];
+        return CLAIM_LOCOMOTIVES[routeIndex][option] <= cards.countOf(Card.LOCOMOTIVE)
+                && (carType == NO_CARD || CLAIM_CAR_COUNTS[routeIndex][option] <= cards.countOf(Card.ALL.get(carType)));
+    }
+
+    private static List<List<SortedBag<Card>>> claimCards(){
+        List<List<SortedBag<Card>>> claimCards = new ArrayList<>();
+        for(Route route : ROUTES) claimCards.add(List.copyOf(route.possibleClaimCards()));
+        return List.copyOf(claimCards);
+    }
+}
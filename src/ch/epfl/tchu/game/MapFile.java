@@ -0,0 +1,236 @@
+package ch.epfl.tchu.game;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * reading and writing of maps (see GameMap) in two formats :
+ * - a text format in UTF-8, easy to write by hand, with one line per element, its fields being separated by ';' and the
+ *   lines starting with '#' being ignored :
+ *     station;id;name                                  (the ids being 0, 1, 2... in the order of the lines)
+ *     route;id;station1 id;station2 id;length;level;color   (the color being empty for a neutral route)
+ *     ticket;from id;to id;points[;from id;to id;points...]   (one group of three fields per trip)
+ * - a binary format for very large maps, read from the file mapped in memory : a header (the magic number, the version
+ *   and the numbers of stations, routes and tickets), the names of the stations, the routes (id, ids of the stations,
+ *   length, level and color) and the tickets (number of trips, then the ids of the stations and the points of each trip),
+ *   the strings being written as their length in bytes followed by their bytes in UTF-8.
+ * The elements are read into arrays indexed by their id, and the routes and the tickets refer to the stations by their id.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class MapFile {
+
+    private final static int MAGIC = 0x7443486d;    //"tCHm"
+    private final static int VERSION = 1;
+    private final static int NO_COLOR = -1;
+
+    private final static String SEPARATOR = ";";
+    private final static String COMMENT = "#";
+    private final static String STATION = "station";
+    private final static String ROUTE = "route";
+    private final static String TICKET = "ticket";
+    private final static int TRIP_FIELDS = 3;
+
+    private final static Route.Level[] LEVELS = Route.Level.values();
+
+    private MapFile(){}
+
+    /**
+     * read a map, in the binary format if the file starts with its magic number, else in the text format
+     * @param file the file
+     * @return the map
+     * @throws UncheckedIOException if the file can not be read
+     * @throws IllegalArgumentException if the file is not a valid map
+     */
+    public static GameMap read(Path file){
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(Integer.BYTES);
+            boolean binary = channel.read(start, 0) == Integer.BYTES && start.getInt(0) == MAGIC;
+            if(binary) return readBinary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return readText(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param reader the reader of a map in the text format
+     * @return the map
+     * @throws IOException if the reader fails
+     * @throws IllegalArgumentException if the text is not a valid map
+     */
+    public static GameMap readText(BufferedReader reader) throws IOException {
+        List<Station> stations = new ArrayList<>();
+        List<Route> routes = new ArrayList<>();
+        List<Ticket> tickets = new ArrayList<>();
+        Pattern separator = Pattern.compile(Pattern.quote(SEPARATOR));
+
+        String line;
+        while ((line = reader.readLine()) != null){
+            if(line.isBlank() || line.startsWith(COMMENT)) continue;
+            String[] fields = separator.split(line, -1);
+            try {
+                switch (fields[0]){
+                    case STATION:
+                        checkFormat(fields.length == 3 && Integer.parseInt(fields[1]) == stations.size(), line);
+                        stations.add(new Station(stations.size(), fields[2]));
+                        break;
+                    case ROUTE:
+                        checkFormat(fields.length == 7, line);
+                        routes.add(new Route(fields[1], station(stations, fields[2]), station(stations, fields[3]),
+                                Integer.parseInt(fields[4]), Route.Level.valueOf(fields[5]),
+                                fields[6].isEmpty() ? null : Color.valueOf(fields[6])));
+                        break;
+                    case TICKET:
+                        checkFormat(fields.length > 1 && (fields.length - 1) % TRIP_FIELDS == 0, line);
+                        List<Trip> trips = new ArrayList<>();
+                        for(int i=1;i<fields.length;i+=TRIP_FIELDS){
+                            trips.add(new Trip(station(stations, fields[i]), station(stations, fields[i + 1]), Integer.parseInt(fields[i + 2])));
+                        }
+                        tickets.add(new Ticket(trips));
+                        break;
+                    default:
+                        checkFormat(false, line);
+                }
+            } catch (NullPointerException | IndexOutOfBoundsException e) {
+                //a reference to a station that is not defined yet, or a null field given to a constructor
+                throw new IllegalArgumentException("invalid line : " + line, e);
+            }
+        }
+        return GameMap.of(stations, routes, tickets);
+    }
+
+    /**
+     * write the map in the text format
+     * @param map the map
+     * @param writer the writer
+     * @throws IOException if the writer fails
+     * @throws IllegalArgumentException if the name of a station or the id of a route contains the separator
+     */
+    public static void writeText(GameMap map, Writer writer) throws IOException {
+        for(Station station : map.stations()){
+            checkFormat(!station.name().contains(SEPARATOR), station.name());
+            writer.write(String.join(SEPARATOR, STATION, Integer.toString(station.id()), station.name()));
+            writer.write('\n');
+        }
+        for(Route route : map.routes()){
+            checkFormat(!route.id().contains(SEPARATOR), route.id());
+            writer.write(String.join(SEPARATOR, ROUTE, route.id(), Integer.toString(route.station1().id()),
+                    Integer.toString(route.station2().id()), Integer.toString(route.length()), route.level().name(),
+                    route.color() == null ? "" : route.color().name()));
+            writer.write('\n');
+        }
+        for(Ticket ticket : map.tickets()){
+            StringBuilder line = new StringBuilder(TICKET);
+            for(Trip trip : ticket.getTrip()){
+                line.append(SEPARATOR).append(trip.from().id()).append(SEPARATOR).append(trip.to().id()).append(SEPARATOR).append(trip.points());
+            }
+            writer.write(line.append('\n').toString());
+        }
+    }
+
+    /**
+     * @param buffer a buffer containing a map in the binary format from its position
+     * @return the map
+     * @throws IllegalArgumentException if the buffer does not contain a valid map
+     */
+    public static GameMap readBinary(ByteBuffer buffer){
+        try {
+            checkFormat(buffer.getInt() == MAGIC && buffer.getInt() == VERSION, "header");
+            Station[] stations = new Station[buffer.getInt()];
+            Route[] routes = new Route[buffer.getInt()];
+            Ticket[] tickets = new Ticket[buffer.getInt()];
+
+            for(int i=0;i<stations.length;i++) stations[i] = new Station(i, readString(buffer));
+            for(int i=0;i<routes.length;i++){
+                String id = readString(buffer);
+                Station station1 = stations[buffer.getInt()];
+                Station station2 = stations[buffer.getInt()];
+                int length = buffer.get();
+                Route.Level level = LEVELS[buffer.get()];
+                int color = buffer.get();
+                routes[i] = new Route(id, station1, station2, length, level, color == NO_COLOR ? null : Color.ALL.get(color));
+            }
+            for(int i=0;i<tickets.length;i++){
+                Trip[] trips = new Trip[buffer.getInt()];
+                for(int t=0;t<trips.length;t++) trips[t] = new Trip(stations[buffer.getInt()], stations[buffer.getInt()], buffer.getInt());
+                tickets[i] = new Ticket(Arrays.asList(trips));
+            }
+            return GameMap.of(Arrays.asList(stations), Arrays.asList(routes), Arrays.asList(tickets));
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            //a truncated buffer, an index out of bounds or a null station
+            throw new IllegalArgumentException("invalid binary map", e);
+        }
+    }
+
+    /**
+     * write the map in the binary format
+     * @param map the map
+     * @param file the file, replaced if it exists
+     * @throws UncheckedIOException if the file can not be written
+     */
+    public static void writeBinary(GameMap map, Path file){
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(map.stations().size());
+            output.writeInt(map.routes().size());
+            output.writeInt(map.tickets().size());
+            for(Station station : map.stations()) writeString(output, station.name());
+            for(Route route : map.routes()){
+                writeString(output, route.id());
+                output.writeInt(route.station1().id());
+                output.writeInt(route.station2().id());
+                output.writeByte(route.length());
+                output.writeByte(route.level().ordinal());
+                output.writeByte(route.color() == null ? NO_COLOR : route.color().ordinal());
+            }
+            for(Ticket ticket : map.tickets()){
+                output.writeInt(ticket.getTrip().size());
+                for(Trip trip : ticket.getTrip()){
+                    output.writeInt(trip.from().id());
+                    output.writeInt(trip.to().id());
+                    output.writeInt(trip.points());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Station station(List<Station> stations, String id){
+        return stations.get(Integer.parseInt(id));
+    }
+
+    private static String readString(ByteBuffer buffer){
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        checkFormat(bytes.length <= 0xffff, string);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void checkFormat(boolean valid, String element){
+        if(!valid) throw new IllegalArgumentException("invalid map element : " + element);
+    }
+}
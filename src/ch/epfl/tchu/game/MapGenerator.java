@@ -0,0 +1,282 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * generator of synthetic maps (see GameMap) of any size, to measure how the algorithms of the game scale with the map.
+ * The same number of stations and the same seed always give the same map.
+ * The stations are placed on a grid, filled row by row, and moved randomly inside their cell. They are connected by a
+ * random spanning tree of the grid (each station being connected to its left or upper neighbour), so that every
+ * station can be reached, and by some other edges of the grid and diagonals of its squares (at most one per square),
+ * so that no two edges cross, as on a real map.
+ * The routes look like the ones of ChMap, whose distributions are used : the longest edges get the longest lengths,
+ * with the same proportion of each length as in ChMap, and the same proportions of tunnels, of twin routes and of each
+ * color. The tickets are in the same number per station as in ChMap, with the same proportion of tickets with several
+ * trips. The points of a trip are the straight line distance between its stations, in cars.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class MapGenerator {
+
+    private final static double JITTER = 0.7;                    //width of the zone of a station in its cell
+    //probabilities of the edges added to the spanning tree, so that there are about 1.5 pairs of connected stations
+    //per station, as in ChMap
+    private final static double GRID_EDGE_PROBABILITY = 0.35;
+    private final static double DIAGONAL_PROBABILITY = 0.15;
+    private final static int MIN_TRIPS = 3;                      //number of trips of a ticket with several trips
+    private final static int MAX_TRIPS = 4;
+    private final static int MAX_TRIES = 16;                     //to find the destination of a trip
+
+    private MapGenerator(){}
+
+    /**
+     * write a generated map to a file, in the text format of MapFile if its name ends with ".txt", else in the binary
+     * format
+     * @param args the number of stations, the seed and the file
+     */
+    public static void main(String[] args){
+        Preconditions.checkArgument(args.length == 3);
+        GameMap map = generate(Integer.parseInt(args[0]), Long.parseLong(args[1]));
+        Path file = Path.of(args[2]);
+        if(args[2].endsWith(".txt")){
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                MapFile.writeText(map, writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        else MapFile.writeBinary(map, file);
+        System.out.println(map.stations().size() + " stations, " + map.routes().size() + " routes, " + map.tickets().size() + " tickets");
+    }
+
+    /**
+     * @param stationCount the number of stations
+     * @param seed the seed of the random generator
+     * @return the map
+     * @throws IllegalArgumentException if there are less than two stations
+     */
+    public static GameMap generate(int stationCount, long seed){
+        Preconditions.checkArgument(stationCount >= 2);
+        return new Generator(stationCount, new Random(seed)).map();
+    }
+
+    /**
+     * the distributions of ChMap, as lists in which each value appears as many times as in ChMap
+     */
+    private static final class ChMapDistributions {
+
+        private final static List<Integer> LENGTHS;             //sorted
+        private final static List<Color> COLORS;                //null for a neutral route
+        private final static double TUNNEL_PROBABILITY;
+        private final static double TWIN_PROBABILITY;           //per pair of connected stations
+        private final static List<Integer> TRIP_POINTS;         //of the tickets with one trip
+        private final static double TICKETS_PER_STATION;
+        private final static double SEVERAL_TRIPS_PROBABILITY;
+
+        static {
+            GameMap map = ChMap.map();
+            List<Integer> lengths = new ArrayList<>();
+            List<Color> colors = new ArrayList<>();
+            int tunnels = 0;
+            int twins = 0;
+            for(int i=0;i<map.routes().size();i++){
+                Route route = map.routes().get(i);
+                lengths.add(route.length());
+                colors.add(route.color());
+                if(route.level() == Route.Level.UNDERGROUND) tunnels++;
+                if(map.twinIndex(i) != GameMap.NO_ROUTE) twins++;
+            }
+            Collections.sort(lengths);
+            LENGTHS = List.copyOf(lengths);
+            COLORS = Collections.unmodifiableList(colors);
+            TUNNEL_PROBABILITY = (double) tunnels / map.routes().size();
+            //each twin is counted twice, as the twin of the other route
+            int pairs = map.routes().size() - twins / 2;
+            TWIN_PROBABILITY = (double) (twins / 2) / pairs;
+
+            List<Integer> points = new ArrayList<>();
+            int severalTrips = 0;
+            for(Ticket ticket : map.tickets()){
+                if(ticket.getTrip().size() == 1) points.add(ticket.getTrip().get(0).points());
+                else severalTrips++;
+            }
+            TRIP_POINTS = List.copyOf(points);
+            TICKETS_PER_STATION = (double) map.tickets().size() / map.stations().size();
+            SEVERAL_TRIPS_PROBABILITY = (double) severalTrips / map.tickets().size();
+        }
+    }
+
+    /**
+     * the generation of one map, the stations and the edges being kept in arrays indexed by their id
+     */
+    private static final class Generator {
+
+        private final int stationCount;
+        private final int columns;
+        private final Random random;
+        private final double[] xs;
+        private final double[] ys;
+        private final Station[] stations;
+        private int[] edgeStations1 = new int[16];
+        private int[] edgeStations2 = new int[16];
+        private int edgeCount;
+        private double carsPerUnit;                             //mean number of cars of a route per unit of distance
+
+        private Generator(int stationCount, Random random){
+            this.stationCount = stationCount;
+            this.columns = (int) Math.ceil(Math.sqrt(stationCount));
+            this.random = random;
+            this.xs = new double[stationCount];
+            this.ys = new double[stationCount];
+            this.stations = new Station[stationCount];
+        }
+
+        private GameMap map(){
+            for(int s=0;s<stationCount;s++){
+                stations[s] = new Station(s, "S" + s);
+                xs[s] = column(s) + (random.nextDouble() - 0.5) * JITTER;
+                ys[s] = row(s) + (random.nextDouble() - 0.5) * JITTER;
+            }
+            addEdges();
+            List<Route> routes = routes();
+            return GameMap.of(Arrays.asList(stations), routes, tickets());
+        }
+
+        private void addEdges(){
+            for(int s=1;s<stationCount;s++){
+                //spanning tree : the left or the upper neighbour (which always exists, the grid being filled by rows)
+                boolean hasLeft = column(s) > 0;
+                boolean hasUpper = row(s) > 0;
+                boolean toLeft = hasLeft && (!hasUpper || random.nextBoolean());
+                int treeNeighbour = toLeft ? s - 1 : s - columns;
+                addEdge(treeNeighbour, s);
+
+                //the other one, and a diagonal of the square whose lower right corner is s
+                if(hasLeft && hasUpper){
+                    int otherNeighbour = toLeft ? s - columns : s - 1;
+                    if(random.nextDouble() < GRID_EDGE_PROBABILITY) addEdge(otherNeighbour, s);
+                    if(random.nextDouble() < DIAGONAL_PROBABILITY){
+                        if(random.nextBoolean()) addEdge(s - columns - 1, s);
+                        else addEdge(s - columns, s - 1);
+                    }
+                }
+            }
+        }
+
+        private void addEdge(int station1, int station2){
+            if(edgeCount == edgeStations1.length){
+                edgeStations1 = Arrays.copyOf(edgeStations1, 2 * edgeCount);
+                edgeStations2 = Arrays.copyOf(edgeStations2, 2 * edgeCount);
+            }
+            edgeStations1[edgeCount] = station1;
+            edgeStations2[edgeCount] = station2;
+            edgeCount++;
+        }
+
+        private List<Route> routes(){
+            //the edges sorted by distance, the distance (less than 3, in units of 2^-20) in the high bits and the index in
+            //the low ones
+            long[] sortedEdges = new long[edgeCount];
+            double totalDistance = 0;
+            for(int e=0;e<edgeCount;e++){
+                double distance = distance(edgeStations1[e], edgeStations2[e]);
+                totalDistance += distance;
+                sortedEdges[e] = (long) (distance * (1 << 20)) << Integer.SIZE | e;
+            }
+            Arrays.sort(sortedEdges);
+
+            int[] lengths = new int[edgeCount];
+            List<Integer> chMapLengths = ChMapDistributions.LENGTHS;
+            long totalLength = 0;
+            for(int rank=0;rank<edgeCount;rank++){
+                int length = chMapLengths.get((int) ((long) rank * chMapLengths.size() / edgeCount));
+                lengths[(int) sortedEdges[rank]] = length;
+                totalLength += length;
+            }
+            carsPerUnit = totalLength / totalDistance;
+
+            List<Route> routes = new ArrayList<>();
+            for(int e=0;e<edgeCount;e++){
+                Station station1 = stations[edgeStations1[e]];
+                Station station2 = stations[edgeStations2[e]];
+                String id = station1.name() + "_" + station2.name() + "_";
+                Route.Level level = random.nextDouble() < ChMapDistributions.TUNNEL_PROBABILITY ? Route.Level.UNDERGROUND : Route.Level.OVERGROUND;
+                Color color = randomElement(ChMapDistributions.COLORS);
+                routes.add(new Route(id + 1, station1, station2, lengths[e], level, color));
+                if(random.nextDouble() < ChMapDistributions.TWIN_PROBABILITY){
+                    //as in ChMap, the twin of a neutral route is neutral, and the twin of a colored route has another color
+                    Color twinColor = null;
+                    while (color != null && (twinColor == null || twinColor == color)) twinColor = randomElement(ChMapDistributions.COLORS);
+                    routes.add(new Route(id + 2, station1, station2, lengths[e], level, twinColor));
+                }
+            }
+            return routes;
+        }
+
+        private List<Ticket> tickets(){
+            int ticketCount = Math.max(1, (int) Math.round(stationCount * ChMapDistributions.TICKETS_PER_STATION));
+            List<Ticket> tickets = new ArrayList<>(ticketCount);
+            while (tickets.size() < ticketCount){
+                int from = random.nextInt(stationCount);
+                int tripCount = random.nextDouble() < ChMapDistributions.SEVERAL_TRIPS_PROBABILITY ? MIN_TRIPS + random.nextInt(MAX_TRIPS - MIN_TRIPS + 1) : 1;
+                Set<Integer> destinations = new LinkedHashSet<>();
+                for(int tries=0;tries<MAX_TRIES && destinations.size()<tripCount;tries++){
+                    int to = destination(from, randomElement(ChMapDistributions.TRIP_POINTS));
+                    if(to != from) destinations.add(to);
+                }
+                if(destinations.isEmpty()) continue;
+
+                List<Trip> trips = new ArrayList<>();
+                for(int to : destinations){
+                    int points = Math.max(1, (int) Math.round(distance(from, to) * carsPerUnit));
+                    trips.add(new Trip(stations[from], stations[to], points));
+                }
+                tickets.add(new Ticket(trips));
+            }
+            return tickets;
+        }
+
+        /**
+         * @return the station closest to the point at the distance of the given points from the station, in a random
+         * direction (the point being moved onto the grid if it is outside)
+         */
+        private int destination(int from, int points){
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double distance = points / carsPerUnit;
+            int rows = (stationCount + columns - 1) / columns;
+            int row = clamp((int) Math.round(ys[from] + distance * Math.sin(angle)), rows - 1);
+            int column = clamp((int) Math.round(xs[from] + distance * Math.cos(angle)), columns - 1);
+            //the last row may not be full, the row above it is
+            if(row * columns + column >= stationCount) row--;
+            return row * columns + column;
+        }
+
+        private int row(int station){
+            return station / columns;
+        }
+
+        private int column(int station){
+            return station % columns;
+        }
+
+        private double distance(int station1, int station2){
+            return Math.hypot(xs[station1] - xs[station2], ys[station1] - ys[station2]);
+        }
+
+        private <T> T randomElement(List<T> list){
+            return list.get(random.nextInt(list.size()));
+        }
+
+        private static int clamp(int value, int max){
+            return Math.max(0, Math.min(value, max));
+        }
+    }
+}
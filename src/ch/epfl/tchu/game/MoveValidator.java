@@ -0,0 +1,132 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.SortedBag;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static ch.epfl.tchu.game.Constants.*;
+
+/**
+ * validation by the game of the decisions of the players, so that a buggy or malicious player (a remote one for example)
+ * can not put the game in an illegal state. Each illegal decision is replaced by a legal fallback decision : two cards
+ * are drawn from the deck instead of an illegal turn or claim (see Game), the draw is made from the deck instead of an
+ * illegal slot, all the tickets are kept or no additional card is played.
+ * A claim is checked with the tables of LegalMoves (the index of the route, of its twin and of the set of initial cards)
+ * and with an index of the owner of each route, updated with the routes claimed since the previous state, so that no
+ * check allocates anything.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class MoveValidator {
+
+    private final static PlayerId[] PLAYER_IDS = PlayerId.values();
+
+    private final PlayerId[] routeOwners;           //owner of each route, indexed like the routes of the active map
+    private final int[] indexedRouteCounts;         //per player, number of its routes already in routeOwners
+
+    /**
+     * validator of a game where no route is claimed yet
+     */
+    MoveValidator(){
+        this.routeOwners = new PlayerId[GameMap.active().routes().size()];
+        this.indexedRouteCounts = new int[PLAYER_IDS.length];
+    }
+
+    /**
+     * add to the index of the owners the routes claimed since the last update (the claimed routes being added at the end
+     * of the routes of a player), or build it again if the state is not a later state of the same game
+     * @param gameState the state of the game
+     */
+    void update(PublicGameState gameState){
+        for(PlayerId player : PLAYER_IDS){
+            PublicPlayerState state = gameState.playerState(player);
+            int routeCount = state == null ? 0 : state.routes().size();
+            if(routeCount < indexedRouteCounts[player.ordinal()]){
+                Arrays.fill(routeOwners, null);
+                Arrays.fill(indexedRouteCounts, 0);
+                update(gameState);
+                return;
+            }
+        }
+
+        for(PlayerId player : PLAYER_IDS){
+            PublicPlayerState state = gameState.playerState(player);
+            if(state == null) continue; //the player does not take part in the game
+            List<Route> routes = state.routes();
+            for(int i=indexedRouteCounts[player.ordinal()];i<routes.size();i++){
+                int routeIndex = LegalMoves.routeIndex(routes.get(i));
+                if(routeIndex != LegalMoves.NO_ROUTE) routeOwners[routeIndex] = player;
+            }
+            indexedRouteCounts[player.ordinal()] = routes.size();
+        }
+    }
+
+    /**
+     * @param gameState the state of the game
+     * @param turnKind the kind of turn chosen by the current player
+     * @return true if the current player can play this kind of turn (a claim is checked when the route is known)
+     */
+    static boolean isValidTurn(PublicGameState gameState, Player.TurnKind turnKind){
+        if(turnKind == null) return false;
+        switch (turnKind){
+            case DRAW_TICKETS:
+                return gameState.canDrawTickets();
+            case DRAW_CARDS:
+                return gameState.canDrawCards();
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @param playerState the state of the current player
+     * @param route the route the player wants to claim
+     * @param initialCards the initial cards the player wants to use
+     * @return true if neither the route nor its twin has an owner (according to the last update), and if the player has
+     * the cars and the cards to claim the route with these initial cards
+     */
+    boolean isValidClaim(PlayerState playerState, Route route, SortedBag<Card> initialCards){
+        int routeIndex = LegalMoves.routeIndex(route);
+        if(routeIndex == LegalMoves.NO_ROUTE || routeOwners[routeIndex] != null) return false;
+        int twinIndex = LegalMoves.twinIndex(routeIndex);
+        if(twinIndex != LegalMoves.NO_ROUTE && routeOwners[twinIndex] != null) return false;
+        if(route.length() > playerState.carCount()) return false;
+
+        int option = LegalMoves.claimOption(routeIndex, initialCards);
+        return option != LegalMoves.NO_OPTION && LegalMoves.hasClaimCards(routeIndex, option, playerState.cards());
+    }
+
+    /**
+     * @param gameState the state of the game
+     * @param slot the slot chosen by the current player
+     * @return the slot if it is one of a face up card or the one of a non empty deck, else the fallback slot : the deck
+     * if it is not empty, else the first face up card
+     */
+    static int validDrawSlot(PublicGameState gameState, int slot){
+        boolean deckEmpty = gameState.cardState().isDeckEmpty();
+        if(slot == DECK_SLOT ? !deckEmpty : slot >= 0 && slot < FACE_UP_CARDS_COUNT) return slot;
+        return deckEmpty ? FACE_UP_CARD_SLOTS.get(0) : DECK_SLOT;
+    }
+
+    /**
+     * @param options the tickets given to the player
+     * @param chosenTickets the tickets kept by the player
+     * @return the chosen tickets if they are part of the options, if there is at least one and if at most
+     * DISCARDABLE_TICKETS_COUNT are discarded, else all the options
+     */
+    static SortedBag<Ticket> validTickets(SortedBag<Ticket> options, SortedBag<Ticket> chosenTickets){
+        boolean valid = chosenTickets != null && !chosenTickets.isEmpty() && options.contains(chosenTickets)
+                && chosenTickets.size() >= options.size() - DISCARDABLE_TICKETS_COUNT;
+        return valid ? chosenTickets : options;
+    }
+
+    /**
+     * @param options the sets of additional cards the player can play
+     * @param chosenCards the cards chosen by the player
+     * @return the chosen cards if they are one of the options, else no card (the player gives up the tunnel)
+     */
+    static SortedBag<Card> validAdditionalCards(List<SortedBag<Card>> options, SortedBag<Card> chosenCards){
+        return chosenCards != null && options.contains(chosenCards) ? chosenCards : SortedBag.of();
+    }
+}
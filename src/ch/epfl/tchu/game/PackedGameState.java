@@ -0,0 +1,218 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * compact encoding of a whole game state in bits, to archive games or to keep states in tables. The fields are written
+ * one after the other, each on the smallest number of bits that can hold all its values :
+ * - the number of players, the current player and the last player (its ordinal plus one, 0 if there is none), on
+ *   3 bits each ;
+ * - the face up cards, the size of the deck and the cards of the deck from the top, each card being its ordinal on
+ *   4 bits ;
+ * - the number of cards of each type in the discards, on 7 bits each ;
+ * - for each player, the number of cards of each type in his hand, then the number of his tickets and their indexes
+ *   in the tickets of the active map ;
+ * - the size of the deck of tickets and the indexes of its tickets from the top ;
+ * - the owner of each route of the active map (its ordinal plus one, 0 if there is none), on 3 bits.
+ * The number of bits of a number of tickets or of an index of a ticket depends on the number of tickets of the active
+ * map, which must be the same when a state is decoded. The encoding reads the parts of the state directly, without
+ * building strings or copies of its lists like the Serdes, and the decoding only creates the parts of the new state.
+ * The routes of a player are decoded in the order of the map, instead of the order in which he claimed them.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class PackedGameState {
+
+    private final static int PLAYER_BITS = 3;      //the ordinals of the players and 0
+    private final static int CARD_BITS = 4;
+    private final static int CARD_COUNT_BITS = bitsFor(Constants.TOTAL_CARDS_COUNT);
+    private final static int NONE = 0;
+    private final static Card[] CARDS = Card.values();
+    private final static PlayerId[] PLAYER_IDS = PlayerId.values();
+
+    private PackedGameState(){}
+
+    /**
+     * @param gameState a state of a game on the active map
+     * @return its encoding
+     */
+    public static byte[] encode(GameState gameState){
+        GameMap map = GameMap.active();
+        int ticketBits = bitsFor(map.tickets().size());
+        CardState cardState = gameState.privateCardState();
+        Deck<Ticket> ticketsDeck = gameState.ticketsDeck();
+        int playerCount = PlayerId.getNbrPlayer();
+
+        int bitCount = 3 * PLAYER_BITS + (Constants.FACE_UP_CARDS_COUNT + cardState.deckSize()) * CARD_BITS
+                + CARD_COUNT_BITS + (playerCount + 1) * Card.COUNT * CARD_COUNT_BITS
+                + (playerCount + 1 + ticketsDeck.size()) * ticketBits + map.routes().size() * PLAYER_BITS;
+        for(int p=0;p<playerCount;p++) bitCount += gameState.playerState(PLAYER_IDS[p]).ticketCount() * ticketBits;
+        BitWriter writer = new BitWriter(new byte[(bitCount + Byte.SIZE - 1) / Byte.SIZE]);
+
+        writer.write(playerCount, PLAYER_BITS);
+        writer.write(gameState.currentPlayerId().ordinal(), PLAYER_BITS);
+        writer.write(gameState.lastPlayer() == null ? NONE : gameState.lastPlayer().ordinal() + 1, PLAYER_BITS);
+
+        for(int slot : Constants.FACE_UP_CARD_SLOTS) writer.write(cardState.faceUpCard(slot).ordinal(), CARD_BITS);
+        writer.write(cardState.deckSize(), CARD_COUNT_BITS);
+        for(int i=0;i<cardState.deckSize();i++) writer.write(cardState.deckCard(i).ordinal(), CARD_BITS);
+        for(Card card : CARDS) writer.write(cardState.discardsCount(card), CARD_COUNT_BITS);
+
+        for(int p=0;p<playerCount;p++){
+            PlayerState playerState = gameState.playerState(PLAYER_IDS[p]);
+            SortedBag<Card> cards = playerState.cards();
+            for(Card card : CARDS) writer.write(cards.countOf(card), CARD_COUNT_BITS);
+            writer.write(playerState.ticketCount(), ticketBits);
+            for(Ticket ticket : playerState.tickets()) writer.write(ticketIndex(map, ticket), ticketBits);
+        }
+
+        writer.write(ticketsDeck.size(), ticketBits);
+        for(int i=0;i<ticketsDeck.size();i++) writer.write(ticketIndex(map, ticketsDeck.cardAt(i)), ticketBits);
+
+        //the owners are first written in the order of the routes of the players, so they are written at their index
+        int routesStart = writer.position();
+        for(int p=0;p<playerCount;p++){
+            List<Route> routes = gameState.playerState(PLAYER_IDS[p]).routes();
+            for(int i=0;i<routes.size();i++){
+                writer.writeAt(routesStart + map.routeIndex(routes.get(i)) * PLAYER_BITS, p + 1, PLAYER_BITS);
+            }
+        }
+        return writer.bytes();
+    }
+
+    /**
+     * @param bytes the encoding of a state of a game on the active map, with the same number of players
+     * @return the state
+     * @throws IllegalArgumentException if the bytes are not the encoding of a state
+     */
+    public static GameState decode(byte[] bytes){
+        GameMap map = GameMap.active();
+        int ticketBits = bitsFor(map.tickets().size());
+        List<PlayerId> players = PlayerId.getAllPlayer();
+        BitReader reader = new BitReader(bytes);
+        try {
+            Preconditions.checkArgument(reader.read(PLAYER_BITS) == players.size());
+            PlayerId currentPlayer = players.get(reader.read(PLAYER_BITS));
+            int lastPlayerCode = reader.read(PLAYER_BITS);
+            PlayerId lastPlayer = lastPlayerCode == NONE ? null : players.get(lastPlayerCode - 1);
+
+            Card[] faceUpCards = new Card[Constants.FACE_UP_CARDS_COUNT];
+            for(int slot=0;slot<faceUpCards.length;slot++) faceUpCards[slot] = CARDS[reader.read(CARD_BITS)];
+            Card[] deck = new Card[reader.read(CARD_COUNT_BITS)];
+            for(int i=0;i<deck.length;i++) deck[i] = CARDS[reader.read(CARD_BITS)];
+            SortedBag<Card> discards = readCards(reader);
+            CardState cardState = CardState.of(Arrays.asList(faceUpCards), Deck.ofOrdered(Arrays.asList(deck)), discards);
+
+            List<SortedBag<Card>> cards = new ArrayList<>(players.size());
+            List<SortedBag<Ticket>> tickets = new ArrayList<>(players.size());
+            for(int p=0;p<players.size();p++){
+                cards.add(readCards(reader));
+                SortedBag.Builder<Ticket> playerTickets = new SortedBag.Builder<>();
+                int ticketCount = reader.read(ticketBits);
+                for(int i=0;i<ticketCount;i++) playerTickets.add(map.tickets().get(reader.read(ticketBits)));
+                tickets.add(playerTickets.build());
+            }
+
+            Ticket[] ticketsDeck = new Ticket[reader.read(ticketBits)];
+            for(int i=0;i<ticketsDeck.length;i++) ticketsDeck[i] = map.tickets().get(reader.read(ticketBits));
+
+            List<List<Route>> routes = new ArrayList<>(players.size());
+            for(int p=0;p<players.size();p++) routes.add(new ArrayList<>());
+            for(Route route : map.routes()){
+                int owner = reader.read(PLAYER_BITS);
+                if(owner != NONE) routes.get(owner - 1).add(route);
+            }
+
+            Map<PlayerId, PlayerState> playerStates = new EnumMap<>(PlayerId.class);
+            for(int p=0;p<players.size();p++){
+                playerStates.put(PLAYER_IDS[p], new PlayerState(tickets.get(p), cards.get(p), routes.get(p)));
+            }
+            return GameState.of(Deck.ofOrdered(Arrays.asList(ticketsDeck)), cardState, currentPlayer, playerStates, lastPlayer);
+        } catch (IndexOutOfBoundsException e) {
+            //an index of card, of player or of ticket that does not exist, or bytes missing at the end
+            throw new IllegalArgumentException("invalid encoding of a game state", e);
+        }
+    }
+
+    private static SortedBag<Card> readCards(BitReader reader){
+        SortedBag.Builder<Card> cards = new SortedBag.Builder<>();
+        for(Card card : CARDS) cards.add(reader.read(CARD_COUNT_BITS), card);
+        return cards.build();
+    }
+
+    private static int ticketIndex(GameMap map, Ticket ticket){
+        int index = map.ticketIndex(ticket);
+        Preconditions.checkArgument(index != GameMap.NO_TICKET);
+        return index;
+    }
+
+    /**
+     * @return the number of bits needed to write the numbers from 0 to max (included)
+     */
+    private static int bitsFor(int max){
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(max));
+    }
+
+    /**
+     * writer of numbers of at most 31 bits in an array of bytes, the first bits being the highest ones of each byte
+     */
+    private static final class BitWriter {
+
+        private final byte[] bytes;
+        private int position;       //in bits
+
+        private BitWriter(byte[] bytes){
+            this.bytes = bytes;
+        }
+
+        private void write(int value, int width){
+            writeAt(position, value, width);
+            position += width;
+        }
+
+        private void writeAt(int bitPosition, int value, int width){
+            for(int bit=width-1;bit>=0;bit--, bitPosition++){
+                if((value >>> bit & 1) != 0) bytes[bitPosition / Byte.SIZE] |= 1 << (Byte.SIZE - 1 - bitPosition % Byte.SIZE);
+            }
+        }
+
+        private int position(){
+            return position;
+        }
+
+        private byte[] bytes(){
+            return bytes;
+        }
+    }
+
+    /**
+     * reader of the numbers written by a BitWriter
+     */
+    private static final class BitReader {
+
+        private final byte[] bytes;
+        private int index;          //of the next byte to read
+        private long buffer;        //its lowest bufferBits bits are the next bits to read
+        private int bufferBits;
+
+        private BitReader(byte[] bytes){
+            this.bytes = bytes;
+        }
+
+        private int read(int width){
+            while (bufferBits < width){
+                buffer = buffer << Byte.SIZE | Byte.toUnsignedInt(bytes[index++]);
+                bufferBits += Byte.SIZE;
+            }
+            bufferBits -= width;
+            return (int) (buffer >>> bufferBits & (1L << width) - 1);
+        }
+    }
+}
@@ -8,7 +8,6 @@ import java.util.Comparator;
 import java.util.List;
 
 import static ch.epfl.tchu.game.Card.ALL;
-import static ch.epfl.tchu.game.ChMap.stations;
 import static ch.epfl.tchu.game.Constants.ADDITIONAL_TUNNEL_CARDS;
 
 /**
@@ -193,7 +192,7 @@ public final class PlayerState extends PublicPlayerState{
      */
     public StationConnectivity stationConnectivityPlayer(){
         //Creating StationPartition.Builder
-        StationPartition.Builder stationPartitionbuilder =  new StationPartition.Builder(stations().size());
+        StationPartition.Builder stationPartitionbuilder =  new StationPartition.Builder(GameMap.active().stations().size());
         for (Route routeElem :routes()) {
             stationPartitionbuilder.connect(routeElem.station1(),routeElem.station2()); //connect the station depending on the routes own by the player
         }
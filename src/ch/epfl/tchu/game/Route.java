@@ -71,17 +71,12 @@ public final class Route {
 
 
     /**
-     * determine the twin route of the route by comparing
-     * its begin and start station if a match occurs the route is say to have a twin and
-     * the corresponding twin is return else return null
-     * @return the twin route of the route
+     * determine the twin route of the route, the other route of the active map (see GameMap) between the same two
+     * stations, found in the table of the map instead of comparing the stations of all the routes
+     * @return the twin route of the route, null if it has none or if it is not a route of the active map
      */
     public Route getTwin(){
-        for(Route route: ChMap.routes()){
-            if(route.stations().containsAll(stations()) && !id().equals(route.id()))
-            {  return route;} //if a correspondence was found we set the twin route and end the methode
-        }
-        return null;
+        return GameMap.active().twin(this);
     }
 
 
@@ -0,0 +1,205 @@
+package ch.epfl.tchu.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * the cost (number of cars still to lay down) of the cheapest path between every pair of stations of the active map (see GameMap) for a player,
+ * with the next station of each of these paths, computed once with the Floyd-Warshall algorithm and then updated as the
+ * routes are claimed : a route claimed by the player costs nothing, a route claimed by another player can not be used
+ * anymore, nor can its twin.
+ * A route claimed by the player only shortens paths, so the table is updated in O(n²) ; a route claimed by another player
+ * only forces a new computation of the table if it was the cheapest way between its two stations.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class StationDistances {
+
+    /**
+     * cost of a path between two stations that are not connected
+     */
+    public static final int UNREACHABLE = -1;
+
+    private static final int INFINITE = Integer.MAX_VALUE / 2; //two infinite costs can be added without overflow
+    private static final int NO_STATION = -1;
+
+    private final GameMap map;
+    private final int stationCount;
+    private final Route[][] edgeRoutes;     //cheapest usable route between two stations, null if there is none
+    private final int[][] edgeCosts;
+    private final int[][] costs;            //cost of the cheapest path between two stations
+    private final int[][] nextStations;     //id of the station following the first one on the cheapest path
+    private final boolean[] ownRoutes;      //indexed like map.routes()
+    private final boolean[] blockedRoutes;  //indexed like map.routes()
+
+    /**
+     * the table of a player that has not claimed any route yet, in a game where no route is claimed
+     */
+    public StationDistances(){
+        this.map = GameMap.active();
+        this.stationCount = map.stations().size();
+        this.edgeRoutes = new Route[stationCount][stationCount];
+        this.edgeCosts = new int[stationCount][stationCount];
+        this.costs = new int[stationCount][stationCount];
+        this.nextStations = new int[stationCount][stationCount];
+        this.ownRoutes = new boolean[map.routes().size()];
+        this.blockedRoutes = new boolean[map.routes().size()];
+
+        for(int[] row : edgeCosts) Arrays.fill(row, INFINITE);
+        for(Route route : map.routes()) updateEdge(route.station1().id(), route.station2().id());
+        computeAll();
+    }
+
+    /**
+     * update the table with a route claimed by the player
+     * @param route the route claimed by the player
+     */
+    public void claimedByPlayer(Route route){
+        int index = map.routeIndex(route);
+        if(ownRoutes[index]) return;
+        ownRoutes[index] = true;
+        blockedRoutes[index] = false;
+
+        int u = route.station1().id();
+        int v = route.station2().id();
+        updateEdge(u, v);
+        //the edge only became cheaper : the paths going through it are the only ones that can become cheaper
+        for(int i=0;i<stationCount;i++){
+            for(int j=0;j<stationCount;j++){
+                relaxThroughEdge(i, j, u, v);
+                relaxThroughEdge(i, j, v, u);
+            }
+        }
+    }
+
+    /**
+     * update the table with a route claimed by another player : the route and its twin can not be used anymore
+     * @param route the route claimed by another player
+     */
+    public void claimedByOther(Route route){
+        int index = map.routeIndex(route);
+        if(blockedRoutes[index] || ownRoutes[index]) return;
+        blockedRoutes[index] = true;
+        int twin = map.twinIndex(index);
+        if(twin != GameMap.NO_ROUTE && !ownRoutes[twin]) blockedRoutes[twin] = true;
+
+        int u = route.station1().id();
+        int v = route.station2().id();
+        int oldCost = edgeCosts[u][v];
+        updateEdge(u, v);
+        //if a path cheaper than the edge existed, no cheapest path was using it
+        if(edgeCosts[u][v] != oldCost && costs[u][v] >= oldCost) computeAll();
+    }
+
+    /**
+     * @param from the first station
+     * @param to the second station
+     * @return the number of cars the player still has to lay down to connect the two stations, UNREACHABLE if they can
+     * not be connected anymore
+     */
+    public int cost(Station from, Station to){
+        int cost = costs[from.id()][to.id()];
+        return cost >= INFINITE ? UNREACHABLE : cost;
+    }
+
+    /**
+     * @param ticket a ticket
+     * @return the cost of the cheapest trip of the ticket, UNREACHABLE if none of its trips can be done anymore
+     */
+    public int cost(Ticket ticket){
+        int best = INFINITE;
+        for(Trip trip : ticket.getTrip()){
+            best = Math.min(best, costs[trip.from().id()][trip.to().id()]);
+        }
+        return best >= INFINITE ? UNREACHABLE : best;
+    }
+
+    /**
+     * @param ticket a ticket
+     * @return true if at least one of the trips of the ticket can still be done by the player
+     */
+    public boolean isFeasible(Ticket ticket){
+        return cost(ticket) != UNREACHABLE;
+    }
+
+    /**
+     * @param from the first station
+     * @param to the second station
+     * @return the cheapest trail between the two stations (the routes already claimed by the player included), the empty
+     * trail if the two stations can not be connected or are the same
+     */
+    public Trail cheapestTrail(Station from, Station to){
+        if(costs[from.id()][to.id()] >= INFINITE) return Trail.of(from, List.of());
+
+        List<Route> routes = new ArrayList<>();
+        int station = from.id();
+        while (station != to.id()){ //O(length of the path) thanks to the next stations
+            int next = nextStations[station][to.id()];
+            routes.add(edgeRoutes[station][next]);
+            station = next;
+        }
+        return Trail.of(from, routes);
+    }
+
+    /**
+     * choose the best usable route between two stations : a route of the player, else the shortest route not blocked
+     */
+    private void updateEdge(int u, int v){
+        Route best = null;
+        int bestCost = INFINITE;
+        List<Route> routes = map.routes();
+        for(int i=0;i<routes.size();i++){
+            Route route = routes.get(i);
+            int s1 = route.station1().id();
+            int s2 = route.station2().id();
+            if(blockedRoutes[i] || !((s1 == u && s2 == v) || (s1 == v && s2 == u))) continue;
+            int cost = ownRoutes[i] ? 0 : route.length();
+            if(cost < bestCost){
+                best = route;
+                bestCost = cost;
+            }
+        }
+        edgeRoutes[u][v] = edgeRoutes[v][u] = best;
+        edgeCosts[u][v] = edgeCosts[v][u] = bestCost;
+    }
+
+    /**
+     * Floyd-Warshall algorithm over the current edges
+     */
+    private void computeAll(){
+        for(int i=0;i<stationCount;i++){
+            for(int j=0;j<stationCount;j++){
+                costs[i][j] = i == j ? 0 : edgeCosts[i][j];
+                nextStations[i][j] = costs[i][j] < INFINITE ? j : NO_STATION;
+            }
+        }
+        for(int k=0;k<stationCount;k++){
+            int[] costsK = costs[k];
+            for(int i=0;i<stationCount;i++){
+                int costIK = costs[i][k];
+                if(costIK >= INFINITE) continue;
+                int[] costsI = costs[i];
+                int[] nextI = nextStations[i];
+                for(int j=0;j<stationCount;j++){
+                    int cost = costIK + costsK[j];
+                    if(cost < costsI[j]){
+                        costsI[j] = cost;
+                        nextI[j] = nextI[k];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * use the path i -> u, then the edge u -> v, then the path v -> j if it is cheaper than the current path i -> j
+     */
+    private void relaxThroughEdge(int i, int j, int u, int v){
+        int cost = costs[i][u] + edgeCosts[u][v] + costs[v][j];
+        if(cost < costs[i][j]){
+            costs[i][j] = cost;
+            nextStations[i][j] = i == u ? v : nextStations[i][u];
+        }
+    }
+}
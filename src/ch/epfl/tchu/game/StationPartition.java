@@ -64,9 +64,9 @@ public final class StationPartition implements StationConnectivity{
          */
         private int representative(int idStation){
             int representative = idStation;
-            boolean found = false;
-            while (!found){
-                found = representative ==buildStationTabID[representative];
+            while (buildStationTabID[representative] != representative){
+                //each station met is linked to the parent of its parent, so that the chains stay short on large maps
+                buildStationTabID[representative] = buildStationTabID[buildStationTabID[representative]];
                 representative = buildStationTabID[representative];
             }
             return representative;
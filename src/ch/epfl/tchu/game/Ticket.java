@@ -11,7 +11,7 @@ import java.util.*;
 public final class Ticket implements Comparable<Ticket> {
 
     private final List<Trip> trips;
-    private final String text;
+    private String text;    //computed at the first use, the tickets of ChMap being created at startup
 
     /**
      * main constructor
@@ -27,7 +27,6 @@ public final class Ticket implements Comparable<Ticket> {
         }
 
         this.trips = List.copyOf(trips);
-        text = computeText(trips);
     }
 
     /**
@@ -55,7 +54,13 @@ public final class Ticket implements Comparable<Ticket> {
      *      ticket from France to one of the other neighbouring countries: France - {Germany (5), Austria (14), Italy (11)}
      */
     public String text(){
-        return text;
+        //several threads can compute it at the same time, they all get the same text
+        String computedText = text;
+        if(computedText == null){
+            computedText = computeText(trips);
+            text = computedText;
+        }
+        return computedText;
     }
 
     @Override
@@ -94,21 +99,22 @@ public final class Ticket implements Comparable<Ticket> {
      */
     private static String computeText(List<Trip> trips){
         TreeSet<String> s = new TreeSet<>();
-        String sJoin;
 
+        //a StringBuilder rather than String.format (which parses its format at each call) or the + operator (whose
+        //first use at startup costs the generation of the concatenation code)
         for (Trip trip : trips) {
-            String sPutPoints = String.format("%s (%s)", trip.to().name(), trip.points());
+            String sPutPoints = new StringBuilder(trip.to().name()).append(" (").append(trip.points()).append(')').toString();
             s.add(sPutPoints);
         }
 
+        StringBuilder text = new StringBuilder(trips.get(0).from().name()).append(" - ");
         //we add the commas as delimiter if we have more than one trip
         if(s.size() == 1){
-            sJoin = s.last();
+            text.append(s.last());
         } else {
-            sJoin = String.format("{%s}", String.join(", ", s));
+            text.append('{').append(String.join(", ", s)).append('}');
         }
-
-        return String.format("%s - %s",trips.get(0).from().name(), sJoin);
+        return text.toString();
     }
 
 }
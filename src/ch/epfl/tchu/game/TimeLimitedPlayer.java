@@ -0,0 +1,246 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static ch.epfl.tchu.game.Player.TurnKind.CLAIM_ROUTE;
+
+/**
+ * a player giving a limited time to another player to take each of its decisions.
+ * The calls to the player are made on a thread specific to this class, so the thread of the game is never blocked by it :
+ * when the deadline of a decision expires, the fallback player takes the decision instead of it (and the rest of the turn
+ * if it was the decision of the turn). As long as the late player has not answered, the fallback player takes its decisions
+ * without waiting, and if the player fails (an exception is thrown) the fallback player replaces it until the end of the game.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class TimeLimitedPlayer implements Player {
+
+    /**
+     * the decisions of a player that are limited in time, the route and the cards of a claim are part of the NEXT_TURN decision
+     */
+    public enum Decision {
+        CHOOSE_INITIAL_TICKETS,
+        NEXT_TURN,
+        CHOOSE_TICKETS,
+        DRAW_SLOT,
+        CHOOSE_ADDITIONAL_CARDS;
+
+        public final static List<Decision> ALL = List.of(values());
+    }
+
+    private final Player player;
+    private final Player fallback;
+    private final Map<Decision, Duration> deadlines;
+    private final ExecutorService executor;
+
+    private Future<?> lastDecision;         //the last decision asked to the player, still running if the player is late
+    private volatile boolean playerLost;    //true if the player has failed, the fallback player then plays until the end
+    private boolean fallbackTurn;           //true if the fallback player has chosen the kind of the current turn
+    private SortedBag<Ticket> initialTickets;
+    private TurnDecision turnDecision;
+
+    /**
+     * private constructor, use the Builder
+     */
+    private TimeLimitedPlayer(Player player, Player fallback, Map<Decision, Duration> deadlines){
+        this.player = player;
+        this.fallback = fallback;
+        this.deadlines = new EnumMap<>(deadlines);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "time-limited-player");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return true if the player has failed and is replaced by the fallback player until the end of the game
+     */
+    public boolean isPlayerLost(){
+        return playerLost;
+    }
+
+    @Override
+    public void initPlayers(PlayerId ownId, Map<PlayerId, String> playerNames) {
+        fallback.initPlayers(ownId, playerNames);
+        notifyPlayer(() -> player.initPlayers(ownId, playerNames));
+    }
+
+    @Override
+    public void receiveInfo(String info) {
+        fallback.receiveInfo(info);
+        notifyPlayer(() -> player.receiveInfo(info));
+    }
+
+    @Override
+    public void updateState(PublicGameState publicGameState, PlayerState ownState) {
+        fallback.updateState(publicGameState, ownState);
+        notifyPlayer(() -> player.updateState(publicGameState, ownState));
+    }
+
+    /**
+     * the tickets are kept to be given to the fallback player only if it has to choose them
+     * @param tickets the tickets distributed to the player
+     */
+    @Override
+    public void setInitialTicketChoice(SortedBag<Ticket> tickets) {
+        initialTickets = tickets;
+        notifyPlayer(() -> player.setInitialTicketChoice(tickets));
+    }
+
+    @Override
+    public SortedBag<Ticket> chooseInitialTickets() {
+        return decide(Decision.CHOOSE_INITIAL_TICKETS, player::chooseInitialTickets, () -> fallback.chooseTickets(initialTickets));
+    }
+
+    /**
+     * the kind of the turn is asked to the player, with the route and the initial cards if it wants to claim a route,
+     * so that the fallback player has to take the whole turn if the deadline expires
+     * @return the action the player want to perform
+     */
+    @Override
+    public TurnKind nextTurn() {
+        turnDecision = decide(Decision.NEXT_TURN, () -> {
+            TurnKind turnKind = player.nextTurn();
+            return turnKind == CLAIM_ROUTE
+                    ? new TurnDecision(turnKind, player.claimedRoute(), player.initialClaimCards())
+                    : new TurnDecision(turnKind, null, null);
+        }, () -> null);
+
+        fallbackTurn = turnDecision == null;
+        return fallbackTurn ? fallback.nextTurn() : turnDecision.turnKind;
+    }
+
+    @Override
+    public SortedBag<Ticket> chooseTickets(SortedBag<Ticket> options) {
+        if(fallbackTurn) return fallback.chooseTickets(options);
+        return decide(Decision.CHOOSE_TICKETS, () -> player.chooseTickets(options), () -> fallback.chooseTickets(options));
+    }
+
+    @Override
+    public int drawSlot() {
+        if(fallbackTurn) return fallback.drawSlot();
+        return decide(Decision.DRAW_SLOT, player::drawSlot, fallback::drawSlot);
+    }
+
+    @Override
+    public Route claimedRoute() {
+        return fallbackTurn ? fallback.claimedRoute() : turnDecision.route;
+    }
+
+    @Override
+    public SortedBag<Card> initialClaimCards() {
+        return fallbackTurn ? fallback.initialClaimCards() : turnDecision.initialClaimCards;
+    }
+
+    @Override
+    public SortedBag<Card> chooseAdditionalCards(List<SortedBag<Card>> options) {
+        if(fallbackTurn) return fallback.chooseAdditionalCards(options);
+        return decide(Decision.CHOOSE_ADDITIONAL_CARDS, () -> player.chooseAdditionalCards(options), () -> fallback.chooseAdditionalCards(options));
+    }
+
+    /**
+     * send a notification to the player without waiting for it, in the order of the calls
+     */
+    private void notifyPlayer(Runnable notification){
+        if(playerLost) return;
+        executor.execute(() -> {
+            try {
+                notification.run();
+            } catch (RuntimeException e) {
+                playerLost = true;
+            }
+        });
+    }
+
+    /**
+     * ask a decision to the player and wait for it until the deadline of the decision
+     * @param decision the kind of decision
+     * @param playerDecision the decision of the player
+     * @param fallbackDecision the decision used if the player is too late, still late from a previous decision or lost
+     * @return the decision of the player if it has answered in time, else the fallback decision
+     */
+    private <T> T decide(Decision decision, Callable<T> playerDecision, Supplier<T> fallbackDecision){
+        if(!playerLost && (lastDecision == null || lastDecision.isDone())){
+            Future<T> future = executor.submit(playerDecision);
+            lastDecision = future;
+            try {
+                return future.get(deadlines.get(decision).toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                System.out.println("Deadline expired for " + decision + ", the fallback player decides"); //the late answer will be ignored
+            } catch (ExecutionException e) {
+                playerLost = true;
+            } catch (InterruptedException e) {
+                throw new Error();
+            }
+        }
+        return fallbackDecision.get();
+    }
+
+    /**
+     * decision of the player for a whole turn
+     */
+    private static final class TurnDecision {
+        private final TurnKind turnKind;
+        private final Route route;
+        private final SortedBag<Card> initialClaimCards;
+
+        private TurnDecision(TurnKind turnKind, Route route, SortedBag<Card> initialClaimCards){
+            this.turnKind = turnKind;
+            this.route = route;
+            this.initialClaimCards = initialClaimCards;
+        }
+    }
+
+    /**
+     * builder of a TimeLimitedPlayer, every decision has the same deadline unless another one is given
+     */
+    public static final class Builder {
+        private final Player player;
+        private final Player fallback;
+        private final Map<Decision, Duration> deadlines;
+
+        /**
+         * @param player the player whose decisions are limited in time
+         * @param fallback the player taking the decisions when the player is too late
+         * @param defaultDeadline the deadline of all the decisions
+         * @throws IllegalArgumentException if the deadline is not strictly positive
+         */
+        public Builder(Player player, Player fallback, Duration defaultDeadline){
+            Preconditions.checkArgument(!defaultDeadline.isNegative() && !defaultDeadline.isZero());
+            this.player = player;
+            this.fallback = fallback;
+            this.deadlines = new EnumMap<>(Decision.class);
+            for(Decision decision : Decision.ALL){
+                deadlines.put(decision, defaultDeadline);
+            }
+        }
+
+        /**
+         * @param decision the kind of decision
+         * @param deadline the time given to the player to take this kind of decision
+         * @return the builder (this)
+         * @throws IllegalArgumentException if the deadline is not strictly positive
+         */
+        public Builder withDeadline(Decision decision, Duration deadline){
+            Preconditions.checkArgument(!deadline.isNegative() && !deadline.isZero());
+            deadlines.put(decision, deadline);
+            return this;
+        }
+
+        /**
+         * @return the time limited player
+         */
+        public TimeLimitedPlayer build(){
+            return new TimeLimitedPlayer(player, fallback, deadlines);
+        }
+    }
+}
@@ -22,6 +22,22 @@ public final class Trail {
         this.stationEnd = stationEnd;
     }
 
+    /**
+     * @param start the departure station
+     * @param routes the routes of the trail, in order from the departure station
+     * @return the trail following the given routes from the departure station (the empty trail if there is no route)
+     */
+    static Trail of(Station start, List<Route> routes){
+        if(routes.isEmpty()) return emptyTrail;
+        Station end = start;
+        int length = 0;
+        for(Route route : routes){
+            end = route.stationOpposite(end);
+            length += route.length();
+        }
+        return new Trail(List.copyOf(routes), length, start, end);
+    }
+
     /**
      * if the route can be connected to the end of the trail she is add to the list of the possible trail
      * @param elemTrail the actual trail
@@ -46,32 +62,10 @@ public final class Trail {
      * @param end the arrival station
      * @param routes the route available
      * @return empty trail if not possible to connect both station else the shortest possible trail to go from the start station to the end station
+     * (see TrailPlanner to search several trails over the same routes)
      */
     public static Trail shortestTrail(List<Route> routes,Station start, Station end){
-        List<Trail> cs = new ArrayList<>();
-        for(Route route : routes){
-            if(route.station1()==start){        cs.add(new Trail(List.of(route),route.length(),start,route.station2()));    }
-            else if(route.station2()==start){   cs.add(new Trail(List.of(route),route.length(),start,route.station1()));    }
-        }
-        Trail shortest = emptyTrail;
-        while (!cs.isEmpty()){
-            ArrayList<Trail> cs1 = new ArrayList<>();
-            for (Trail elemTrail : cs){
-                ArrayList<Route> rs = new ArrayList<>(routes);
-                rs.removeAll(elemTrail.trail);
-                for(Route elemRouteAvailable : rs){
-                    addTrailIfMatch(elemTrail,elemRouteAvailable,cs1);
-                    if(elemTrail.station2().id()==end.id()) break;
-                }
-                if((elemTrail.length()<shortest.length() || shortest.length()==0) && elemTrail.stationEnd.id()==end.id()){
-                    shortest = elemTrail;
-                    cs1=new ArrayList<>();
-                    break;
-                }
-            }
-            cs=cs1;
-        }
-        return shortest;
+        return new TrailPlanner(routes).shortestTrail(start, end);
     }
 
     /**
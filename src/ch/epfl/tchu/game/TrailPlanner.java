@@ -0,0 +1,261 @@
+package ch.epfl.tchu.game;
+
+import java.util.*;
+
+/**
+ * search of the cheapest trail between two stations with the Dijkstra algorithm, over a given set of routes.
+ * The cost of a route is its length, a route claimed by the player costs nothing and a route claimed by another player
+ * (or any other route between the same two stations, as its twin) can not be used.
+ * The routes are indexed once by station (the routes leaving a station are contiguous in arrays of int) and the
+ * searches use a binary heap of ints and scratch arrays reused from one search to the other, so a search does not
+ * allocate anything but the returned trail. A planner is therefore not thread safe.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class TrailPlanner {
+
+    private static final int NONE = -1;
+    private static final Trail EMPTY_TRAIL = Trail.of(null, List.of());
+
+    private final List<Route> routes;
+    private final Map<Route, Integer> routeIndex;
+    private final Station[] stations;           //indexed by id, null if no route reaches the station
+    private final int[] adjacencyStart;         //the routes leaving s are at the indexes adjacencyStart[s] to adjacencyStart[s+1]-1
+    private final int[] adjacentStations;
+    private final int[] adjacentRoutes;
+    private final int[] routeCosts;             //NONE if the route can not be used
+
+    //scratch arrays of the searches, a value is only valid if its stamp is the one of the current search
+    private final int[] costs;
+    private final int[] previousRoutes;
+    private final int[] reachedStamps;
+    private final int[] settledStamps;
+    private final int[] targetStamps;
+    private final int[] heap;
+    private final int[] heapPositions;
+    private int heapSize;
+    private int stamp;
+
+    /**
+     * @param routes the routes the trails can use
+     */
+    public TrailPlanner(List<Route> routes){
+        this.routes = List.copyOf(routes);
+        this.routeIndex = new HashMap<>();
+
+        int stationCount = 0;
+        for(Route route : this.routes){
+            stationCount = Math.max(stationCount, Math.max(route.station1().id(), route.station2().id()) + 1);
+        }
+        this.stations = new Station[stationCount];
+        this.adjacencyStart = new int[stationCount + 1];
+        this.adjacentStations = new int[2 * this.routes.size()];
+        this.adjacentRoutes = new int[2 * this.routes.size()];
+        this.routeCosts = new int[this.routes.size()];
+
+        //number of routes leaving each station, then first index of the routes of each station
+        for(Route route : this.routes){
+            adjacencyStart[route.station1().id() + 1]++;
+            adjacencyStart[route.station2().id() + 1]++;
+        }
+        for(int s=0;s<stationCount;s++) adjacencyStart[s + 1] += adjacencyStart[s];
+
+        int[] filled = Arrays.copyOf(adjacencyStart, stationCount);
+        for(int i=0;i<this.routes.size();i++){
+            Route route = this.routes.get(i);
+            int s1 = route.station1().id();
+            int s2 = route.station2().id();
+            stations[s1] = route.station1();
+            stations[s2] = route.station2();
+            adjacentStations[filled[s1]] = s2;
+            adjacentRoutes[filled[s1]++] = i;
+            adjacentStations[filled[s2]] = s1;
+            adjacentRoutes[filled[s2]++] = i;
+            routeCosts[i] = route.length();
+            routeIndex.put(route, i);
+        }
+
+        this.costs = new int[stationCount];
+        this.previousRoutes = new int[stationCount];
+        this.reachedStamps = new int[stationCount];
+        this.settledStamps = new int[stationCount];
+        this.targetStamps = new int[stationCount];
+        this.heap = new int[stationCount];
+        this.heapPositions = new int[stationCount];
+    }
+
+    /**
+     * the route costs nothing anymore to the player
+     * @param route the route claimed by the player
+     * @throws IllegalArgumentException if the route is not one of the routes of the planner
+     */
+    public void claimedByPlayer(Route route){
+        routeCosts[indexOf(route)] = 0;
+    }
+
+    /**
+     * the route and the other routes between the same two stations not claimed by the player can not be used anymore
+     * @param route the route claimed by another player
+     * @throws IllegalArgumentException if the route is not one of the routes of the planner
+     */
+    public void claimedByOther(Route route){
+        int index = indexOf(route);
+        int s1 = route.station1().id();
+        int s2 = route.station2().id();
+        routeCosts[index] = NONE;
+        for(int e=adjacencyStart[s1];e<adjacencyStart[s1 + 1];e++){
+            if(adjacentStations[e] == s2 && routeCosts[adjacentRoutes[e]] != 0) routeCosts[adjacentRoutes[e]] = NONE;
+        }
+    }
+
+    /**
+     * @param from the departure station
+     * @param to the arrival station
+     * @return the trail between the two stations costing the fewest cars to the player, the empty trail if the stations
+     * are the same or can not be connected
+     */
+    public Trail shortestTrail(Station from, Station to){
+        return shortestTrail(List.of(from), List.of(to));
+    }
+
+    /**
+     * @param from the possible departure stations
+     * @param to the possible arrival stations (as the stations of the countries of a ticket)
+     * @return the trail between one of the departure stations and one of the arrival stations that costs the fewest cars
+     * to the player, the empty trail if a departure station is an arrival station or if they can not be connected
+     */
+    public Trail shortestTrail(Collection<Station> from, Collection<Station> to){
+        nextStamp();
+        for(Station station : to){
+            if(station.id() < stations.length) targetStamps[station.id()] = stamp;
+        }
+        for(Station station : from){
+            int source = station.id();
+            if(source >= stations.length || stations[source] == null) continue;
+            if(targetStamps[source] == stamp) return EMPTY_TRAIL;
+            if(reachedStamps[source] != stamp) reach(source, 0, NONE);
+        }
+        while (heapSize > 0){
+            int station = pop();
+            if(targetStamps[station] == stamp) return trailTo(station);
+            settledStamps[station] = stamp;
+
+            int cost = costs[station];
+            for(int e=adjacencyStart[station];e<adjacencyStart[station + 1];e++){
+                int route = adjacentRoutes[e];
+                int next = adjacentStations[e];
+                if(routeCosts[route] == NONE || settledStamps[next] == stamp) continue;
+                int nextCost = cost + routeCosts[route];
+                if(reachedStamps[next] != stamp){
+                    reach(next, nextCost, route);
+                } else if(nextCost < costs[next]){
+                    costs[next] = nextCost;
+                    previousRoutes[next] = route;
+                    siftUp(heapPositions[next]);
+                }
+            }
+        }
+        return EMPTY_TRAIL;
+    }
+
+    /**
+     * @param trail a trail made of routes of the planner
+     * @return the number of cars the player still has to lay down to claim the trail, given the routes claimed until now
+     * @throws IllegalArgumentException if one of the routes is not one of the routes of the planner or can not be used
+     */
+    public int cost(Trail trail){
+        int cost = 0;
+        for(Route route : trail.getTrail()){
+            int routeCost = routeCosts[indexOf(route)];
+            if(routeCost == NONE) throw new IllegalArgumentException("the route can not be used anymore");
+            cost += routeCost;
+        }
+        return cost;
+    }
+
+    private int indexOf(Route route){
+        Integer index = routeIndex.get(route);
+        if(index == null) throw new IllegalArgumentException("the route is not one of the routes of the planner");
+        return index;
+    }
+
+    /**
+     * follow the previous routes back from the arrival station
+     */
+    private Trail trailTo(int target){
+        List<Route> trail = new ArrayList<>();
+        int station = target;
+        while (previousRoutes[station] != NONE){
+            Route route = routes.get(previousRoutes[station]);
+            trail.add(route);
+            station = route.station1().id() == station ? route.station2().id() : route.station1().id();
+        }
+        Collections.reverse(trail);
+        return Trail.of(stations[station], trail);
+    }
+
+    /**
+     * start a new search : all the values of the scratch arrays become invalid
+     */
+    private void nextStamp(){
+        if(stamp == Integer.MAX_VALUE){
+            Arrays.fill(reachedStamps, 0);
+            Arrays.fill(settledStamps, 0);
+            Arrays.fill(targetStamps, 0);
+            stamp = 0;
+        }
+        stamp++;
+        heapSize = 0;
+    }
+
+    /**
+     * first time the station is reached during the search : it is added to the heap
+     */
+    private void reach(int station, int cost, int previousRoute){
+        reachedStamps[station] = stamp;
+        costs[station] = cost;
+        previousRoutes[station] = previousRoute;
+        heap[heapSize] = station;
+        heapPositions[station] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    /**
+     * remove the station of lowest cost from the heap
+     */
+    private int pop(){
+        int first = heap[0];
+        heap[0] = heap[--heapSize];
+        heapPositions[heap[0]] = 0;
+        siftDown(0);
+        return first;
+    }
+
+    private void siftUp(int position){
+        int station = heap[position];
+        while (position > 0){
+            int parent = (position - 1) >>> 1;
+            if(costs[heap[parent]] <= costs[station]) break;
+            heap[position] = heap[parent];
+            heapPositions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = station;
+        heapPositions[station] = position;
+    }
+
+    private void siftDown(int position){
+        int station = heap[position];
+        while (true){
+            int child = 2 * position + 1;
+            if(child >= heapSize) break;
+            if(child + 1 < heapSize && costs[heap[child + 1]] < costs[heap[child]]) child++;
+            if(costs[heap[child]] >= costs[station]) break;
+            heap[position] = heap[child];
+            heapPositions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = station;
+        heapPositions[station] = position;
+    }
+}
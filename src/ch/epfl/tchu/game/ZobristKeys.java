@@ -0,0 +1,116 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.SortedBag;
+
+import java.util.Map;
+
+/**
+ * the 64 bits Zobrist keys of the parts of a game state, combined with a xor to form the key of the state : the owner of
+ * each route, the number of cards of each type in the hand of each player, the face up cards, the current player and
+ * the last player. The keys are derived from the parts they stand for with the SplitMix64 function instead of being
+ * drawn at random, so they are the same in every run of the program (the key of a route is derived from its id).
+ * The decks, the discards and the tickets are not part of the key.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class ZobristKeys {
+
+    private final static long ROUTE_OWNER = 0x5a1ee7c0ffee0001L;
+    private final static long CARD_COUNT = 0x5a1ee7c0ffee0002L;
+    private final static long FACE_UP_CARD = 0x5a1ee7c0ffee0003L;
+    private final static long CURRENT_PLAYER = 0x5a1ee7c0ffee0004L;
+    private final static long LAST_PLAYER = 0x5a1ee7c0ffee0005L;
+
+    private ZobristKeys(){}
+
+    /**
+     * @param route the route
+     * @param owner the player owning the route
+     * @return the key of the route owned by the player
+     */
+    static long routeOwner(Route route, PlayerId owner){
+        return key(ROUTE_OWNER, route.id().hashCode(), owner.ordinal());
+    }
+
+    /**
+     * @param player the player
+     * @param card the type of card
+     * @param count the number of cards of this type in the hand of the player
+     * @return the key of this number of cards of this type in the hand of the player, 0 if there is no card
+     */
+    static long cardCount(PlayerId player, Card card, int count){
+        return count == 0 ? 0 : key(CARD_COUNT, player.ordinal() * Card.COUNT + card.ordinal(), count);
+    }
+
+    /**
+     * @param slot the slot of the face up card
+     * @param card the card in this slot
+     * @return the key of the card in this slot
+     */
+    static long faceUpCard(int slot, Card card){
+        return key(FACE_UP_CARD, slot, card.ordinal());
+    }
+
+    /**
+     * @param player the current player
+     * @return the key of the current player
+     */
+    static long currentPlayer(PlayerId player){
+        return key(CURRENT_PLAYER, player.ordinal(), 0);
+    }
+
+    /**
+     * @param player the last player, null if the last turn has not begun
+     * @return the key of the last player, 0 if the last turn has not begun
+     */
+    static long lastPlayer(PlayerId player){
+        return player == null ? 0 : key(LAST_PLAYER, player.ordinal(), 0);
+    }
+
+    /**
+     * @param player the player
+     * @param hand the hand of the player before the change
+     * @param card a type of card
+     * @param difference the number of cards of this type added to (or removed from if negative) the hand
+     * @return the change of the key of the state (to apply with a xor) when the number of cards changes
+     */
+    static long cardCountChange(PlayerId player, SortedBag<Card> hand, Card card, int difference){
+        int count = hand.countOf(card);
+        return cardCount(player, card, count) ^ cardCount(player, card, count + difference);
+    }
+
+    /**
+     * @param cardState the state of the cards
+     * @param currentPlayerId the current player
+     * @param playerStates the state of each player
+     * @param lastPlayer the last player, null if the last turn has not begun
+     * @return the key of the game state made of these parts, computed from all of them
+     */
+    static long of(PublicCardState cardState, PlayerId currentPlayerId, Map<PlayerId, PlayerState> playerStates, PlayerId lastPlayer){
+        long key = currentPlayer(currentPlayerId) ^ lastPlayer(lastPlayer);
+        for(int slot : Constants.FACE_UP_CARD_SLOTS){
+            key ^= faceUpCard(slot, cardState.faceUpCard(slot));
+        }
+        for(Map.Entry<PlayerId, PlayerState> entry : playerStates.entrySet()){
+            PlayerId player = entry.getKey();
+            for(Route route : entry.getValue().routes()) key ^= routeOwner(route, player);
+            SortedBag<Card> cards = entry.getValue().cards();
+            for(Card card : Card.ALL) key ^= cardCount(player, card, cards.countOf(card));
+        }
+        return key;
+    }
+
+    /**
+     * the values are mixed one after the other with the SplitMix64 function
+     */
+    private static long key(long part, int first, int second){
+        return mix(mix(mix(part) + first) + second);
+    }
+
+    private static long mix(long value){
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
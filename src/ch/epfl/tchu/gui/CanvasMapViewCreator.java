@@ -0,0 +1,375 @@
+package ch.epfl.tchu.gui;
+
+import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.game.Card;
+import ch.epfl.tchu.game.ChMap;
+import ch.epfl.tchu.game.PlayerId;
+import ch.epfl.tchu.game.Route;
+import javafx.beans.property.ObjectProperty;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * creator of a view of the map equivalent to the one of MapViewCreator, but where all the routes are drawn on a single
+ * Canvas over the background image instead of being made of several nodes per box styled by CSS.
+ * The position of the boxes is read from map.css and their colors are the ones of colors.css, so both views look the
+ * same. When the owner of a route changes, or when the route under the mouse changes, only the rectangle containing the
+ * route is drawn again, with the boxes of all the routes crossing it. The boxes are put in the buckets of a grid covering
+ * the map, so the box under the mouse is found by testing only the few boxes of its bucket.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+abstract class CanvasMapViewCreator {
+
+    private final static int WIDTH_RECTANGLE = 36;
+    private final static int HEIGHT_RECTANGLE = 12;
+    private final static int CIRCLE_RADIUS = 3;
+    private final static double HOVER_SCALE = 1.1;
+    private final static double MARGIN = 3;         //space around a box covering its stroke and its scale under the mouse
+    private final static int BUCKET_SIZE = 32;      //side of the buckets of the grid, in pixels
+    private final static int NO_ROUTE = -1;
+
+    //same colors as colors.css and map.css
+    private final static Map<String, Color> FILL_COLORS = Map.ofEntries(
+            Map.entry("BLACK", Color.web("#7f7f7f")),
+            Map.entry("VIOLET", Color.web("#eb93db")),
+            Map.entry("BLUE", Color.web("#86aaff")),
+            Map.entry("GREEN", Color.web("#92db98")),
+            Map.entry("YELLOW", Color.web("#eae853")),
+            Map.entry("ORANGE", Color.web("#e1a84f")),
+            Map.entry("RED", Color.web("#e9787d")),
+            Map.entry("WHITE", Color.web("#f5f5f5")),
+            Map.entry("NEUTRAL", Color.web("#d3d3d3")),
+            Map.entry("PLAYER_1", Color.LIGHTBLUE),
+            Map.entry("PLAYER_2", Color.LIGHTPINK),
+            Map.entry("PLAYER_3", Color.LIGHTGREEN),
+            Map.entry("PLAYER_4", Color.LIGHTYELLOW),
+            Map.entry("PLAYER_5", Color.LIGHTGRAY));
+    private final static Color TRACK_STROKE = Color.DIMGRAY;
+    private final static Color BLACK_TRACK_STROKE = Color.GREY;
+
+    //one line of map.css giving the position of a box, like : #BAD_BAL_1_1 { -fx-translate-x: 497; -fx-translate-y: 123; -fx-rotate: 27 }
+    private final static Pattern CELL_POSITION = Pattern.compile(
+            "#(\\w+)\\s*\\{\\s*-fx-translate-x:\\s*(-?[\\d.]+);\\s*-fx-translate-y:\\s*(-?[\\d.]+);\\s*-fx-rotate:\\s*(-?[\\d.]+);?\\s*}");
+
+    private final static List<Route> ROUTES = ChMap.routes();
+
+    /**
+     * create the view of the map, with the same interaction as the one of MapViewCreator : a route can be clicked when
+     * the player can claim it and a claim handler is set, and it is enlarged while the mouse is over it
+     * @param observableGameState : the subject that are the state of the game that we observe with the observers
+     * @param claimRouteHandlerObjectPropertyHandler: a property containing the action handler to use when the player wants to seize a route
+     * @param cardChooser : a card selector
+     * @return map : the view of the current map
+     */
+    public static Node createMapView(ObservableGameState observableGameState, ObjectProperty<ActionHandlers.ClaimRouteHandler> claimRouteHandlerObjectPropertyHandler, MapViewCreator.CardChooser cardChooser){
+        Pane map = new Pane();
+
+        //background image
+        Image image = GuiResources.mapImage();
+        ImageView background = new ImageView(image);
+        map.getChildren().add(background);
+
+        RouteLayer routeLayer = new RouteLayer(image.getWidth(), image.getHeight(), observableGameState, claimRouteHandlerObjectPropertyHandler, cardChooser);
+        map.getChildren().add(routeLayer.canvas);
+        return map;
+    }
+
+    /**
+     * the canvas on which the routes are drawn, with the geometry of their boxes and the state needed to draw them again
+     */
+    private static final class RouteLayer {
+        private final Canvas canvas;
+        private final GraphicsContext context;
+        private final ObservableGameState observableGameState;
+        private final ObjectProperty<ActionHandlers.ClaimRouteHandler> claimRouteHandler;
+        private final MapViewCreator.CardChooser cardChooser;
+
+        //the boxes of all the routes, in the order of ChMap.routes() then of the boxes, which is the order they are drawn in
+        private final double[] cellX;
+        private final double[] cellY;
+        private final double[] cellCos;
+        private final double[] cellSin;
+        private final int[] cellRoute;
+        private final int[] routeFirstCell;     //index of the first box of each route, the last entry being the number of boxes
+        private final double[][] routeBounds;   //per route : minimal x, minimal y, maximal x and maximal y of its boxes
+
+        private final int bucketColumns;
+        private final int bucketRows;
+        private final int[][] buckets;          //indexes of the boxes crossing each bucket, in increasing order
+        private final BitSet dirtyCells;
+
+        private final PlayerId[] owners;
+        private int hoveredRoute = NO_ROUTE;
+
+        private RouteLayer(double width, double height, ObservableGameState observableGameState,
+                           ObjectProperty<ActionHandlers.ClaimRouteHandler> claimRouteHandler, MapViewCreator.CardChooser cardChooser){
+            this.canvas = new Canvas(width, height);
+            this.context = canvas.getGraphicsContext2D();
+            this.observableGameState = observableGameState;
+            this.claimRouteHandler = claimRouteHandler;
+            this.cardChooser = cardChooser;
+
+            Map<String, double[]> positions = cellPositions();
+            this.routeFirstCell = new int[ROUTES.size() + 1];
+            for(int r=0;r<ROUTES.size();r++) routeFirstCell[r + 1] = routeFirstCell[r] + ROUTES.get(r).length();
+            int cellCount = routeFirstCell[ROUTES.size()];
+            this.cellX = new double[cellCount];
+            this.cellY = new double[cellCount];
+            this.cellCos = new double[cellCount];
+            this.cellSin = new double[cellCount];
+            this.cellRoute = new int[cellCount];
+            this.routeBounds = new double[ROUTES.size()][];
+            for(int r=0;r<ROUTES.size();r++){
+                double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+                for(int i=0;i<ROUTES.get(r).length();i++){
+                    int cell = routeFirstCell[r] + i;
+                    double[] position = positions.get(ROUTES.get(r).id() + "_" + (i + 1));
+                    if(position == null) throw new IllegalStateException("no position in map.css for box " + (i + 1) + " of " + ROUTES.get(r).id());
+                    cellX[cell] = position[0];
+                    cellY[cell] = position[1];
+                    cellCos[cell] = Math.cos(Math.toRadians(position[2]));
+                    cellSin[cell] = Math.sin(Math.toRadians(position[2]));
+                    cellRoute[cell] = r;
+                    addCellBounds(cell, bounds);
+                }
+                routeBounds[r] = bounds;
+            }
+
+            //the grid : each box is put in all the buckets its bounds cross
+            this.bucketColumns = (int) Math.ceil(width / BUCKET_SIZE) + 1;
+            this.bucketRows = (int) Math.ceil(height / BUCKET_SIZE) + 1;
+            List<List<Integer>> bucketLists = new ArrayList<>();
+            for(int b=0;b<bucketColumns * bucketRows;b++) bucketLists.add(new ArrayList<>());
+            double[] bounds = new double[4];
+            for(int cell=0;cell<cellCount;cell++){
+                Arrays.fill(bounds, 0, 2, Double.POSITIVE_INFINITY);
+                Arrays.fill(bounds, 2, 4, Double.NEGATIVE_INFINITY);
+                addCellBounds(cell, bounds);
+                for(int row=row(bounds[1]);row<=row(bounds[3]);row++){
+                    for(int column=column(bounds[0]);column<=column(bounds[2]);column++) bucketLists.get(row * bucketColumns + column).add(cell);
+                }
+            }
+            this.buckets = new int[bucketLists.size()][];
+            for(int b=0;b<buckets.length;b++) buckets[b] = bucketLists.get(b).stream().mapToInt(Integer::intValue).toArray();
+            this.dirtyCells = new BitSet(cellCount);
+
+            this.owners = new PlayerId[ROUTES.size()];
+            for(int r=0;r<ROUTES.size();r++){
+                int routeIndex = r;
+                Route route = ROUTES.get(r);
+                owners[r] = observableGameState.routesOwner(route).get();
+                observableGameState.routesOwner(route).addListener((o, oV, nV) -> {
+                    owners[routeIndex] = nV;
+                    repaint(routeIndex);
+                });
+                //the enlargement under the mouse depends on whether the route can be claimed
+                observableGameState.routeCapturable(route).addListener((o, oV, nV) -> {
+                    if(hoveredRoute == routeIndex) repaint(routeIndex);
+                });
+            }
+            claimRouteHandler.addListener((o, oV, nV) -> {
+                if(hoveredRoute != NO_ROUTE) repaint(hoveredRoute);
+            });
+
+            canvas.setOnMouseMoved(e -> setHoveredRoute(routeAt(e.getX(), e.getY())));
+            canvas.setOnMouseExited(e -> setHoveredRoute(NO_ROUTE));
+            canvas.setOnMouseClicked(e -> {
+                int routeIndex = routeAt(e.getX(), e.getY());
+                if(routeIndex != NO_ROUTE && isEnabled(routeIndex)) claim(ROUTES.get(routeIndex));
+            });
+
+            for(int r=0;r<ROUTES.size();r++) repaint(r);
+        }
+
+        /**
+         * same behaviour as a click on a route of MapViewCreator
+         */
+        private void claim(Route route){
+            List<SortedBag<Card>> possibleClaimCards = observableGameState.possibleClaimCards(route);
+            ActionHandlers.ClaimRouteHandler claimRouteH = claimRouteHandler.get();
+            if(possibleClaimCards.size()==1){
+                //it is only one possibility to claim the route, also it is claimed automatically
+                claimRouteH.onClaimRoute(route,possibleClaimCards.get(0));
+            }
+            else{ //if it is more than one possibility to claim the route, we call the action handler and the method CardChooser
+                ActionHandlers.ChooseCardsHandler chooseCardsH =
+                        chosenCards -> claimRouteH.onClaimRoute(route, chosenCards);
+                cardChooser.chooseCards(possibleClaimCards, chooseCardsH);
+            }
+        }
+
+        /**
+         * @return true if the route reacts to the mouse, like a route of MapViewCreator that is not disabled
+         */
+        private boolean isEnabled(int routeIndex){
+            return claimRouteHandler.get() != null && observableGameState.routeCapturable(ROUTES.get(routeIndex)).get();
+        }
+
+        private void setHoveredRoute(int routeIndex){
+            if(routeIndex == hoveredRoute) return;
+            int previous = hoveredRoute;
+            hoveredRoute = routeIndex;
+            if(previous != NO_ROUTE) repaint(previous);
+            if(routeIndex != NO_ROUTE) repaint(routeIndex);
+        }
+
+        /**
+         * @return the index of the route whose box is drawn at the top at this point, NO_ROUTE if there is none
+         */
+        private int routeAt(double x, double y){
+            if(x < 0 || y < 0 || x >= canvas.getWidth() || y >= canvas.getHeight()) return NO_ROUTE;
+            int[] bucket = buckets[row(y) * bucketColumns + column(x)];
+            //the boxes being drawn in increasing order, the last one containing the point is the one at the top
+            for(int b=bucket.length-1;b>=0;b--){
+                int cell = bucket[b];
+                double dx = x - cellX[cell] - WIDTH_RECTANGLE / 2d;
+                double dy = y - cellY[cell] - HEIGHT_RECTANGLE / 2d;
+                double localX = cellCos[cell] * dx + cellSin[cell] * dy + WIDTH_RECTANGLE / 2d;
+                double localY = -cellSin[cell] * dx + cellCos[cell] * dy + HEIGHT_RECTANGLE / 2d;
+                //the stroke of the track, outside the rectangle, is part of the box
+                if(localX >= -1 && localX <= WIDTH_RECTANGLE + 1 && localY >= -1 && localY <= HEIGHT_RECTANGLE + 1) return cellRoute[cell];
+            }
+            return NO_ROUTE;
+        }
+
+        /**
+         * draw again the rectangle containing the route, with the boxes of all the routes crossing it
+         */
+        private void repaint(int routeIndex){
+            double[] bounds = routeBounds[routeIndex];
+            double x = Math.floor(bounds[0]);
+            double y = Math.floor(bounds[1]);
+            double width = Math.ceil(bounds[2]) - x;
+            double height = Math.ceil(bounds[3]) - y;
+
+            dirtyCells.clear();
+            for(int row=row(bounds[1]);row<=row(bounds[3]);row++){
+                for(int column=column(bounds[0]);column<=column(bounds[2]);column++){
+                    for(int cell : buckets[row * bucketColumns + column]) dirtyCells.set(cell);
+                }
+            }
+
+            context.save();
+            context.beginPath();
+            context.rect(x, y, width, height);
+            context.clip();
+            context.clearRect(x, y, width, height);
+            for(int cell=dirtyCells.nextSetBit(0);cell>=0;cell=dirtyCells.nextSetBit(cell + 1)) drawCell(cell);
+            context.restore();
+        }
+
+        /**
+         * draw a box like the nodes of a box of MapViewCreator styled by map.css and colors.css : the track, enlarged if
+         * the mouse is over the route, and the car of the owner if the route has one
+         */
+        private void drawCell(int cell){
+            int routeIndex = cellRoute[cell];
+            Route route = ROUTES.get(routeIndex);
+            PlayerId owner = owners[routeIndex];
+            Color fill = FILL_COLORS.get(owner != null ? owner.name() : route.color() == null ? "NEUTRAL" : route.color().name());
+
+            context.save();
+            //the rotation is around the center of the box, like the one of a node
+            context.translate(cellX[cell] + WIDTH_RECTANGLE / 2d, cellY[cell] + HEIGHT_RECTANGLE / 2d);
+            context.transform(cellCos[cell], cellSin[cell], -cellSin[cell], cellCos[cell], 0, 0);
+
+            //track
+            context.save();
+            if(routeIndex == hoveredRoute && isEnabled(routeIndex)) context.scale(HOVER_SCALE, HOVER_SCALE);
+            context.translate(-WIDTH_RECTANGLE / 2d, -HEIGHT_RECTANGLE / 2d);
+            context.setFill(fill);
+            context.fillRect(0, 0, WIDTH_RECTANGLE, HEIGHT_RECTANGLE);
+            context.setStroke(route.color() == ch.epfl.tchu.game.Color.BLACK ? BLACK_TRACK_STROKE : TRACK_STROKE);
+            context.setLineWidth(1);
+            if(route.level() == Route.Level.UNDERGROUND){
+                context.setLineDashes(8, 4);
+                context.setLineDashOffset(4);
+                context.setLineCap(StrokeLineCap.BUTT);
+            }
+            //the stroke is outside of the rectangle
+            context.strokeRect(-0.5, -0.5, WIDTH_RECTANGLE + 1, HEIGHT_RECTANGLE + 1);
+            context.restore();
+
+            //car
+            if(owner != null){
+                context.translate(-WIDTH_RECTANGLE / 2d, -HEIGHT_RECTANGLE / 2d);
+                context.setStroke(TRACK_STROKE);
+                context.setLineWidth(2);
+                context.fillRect(0, 0, WIDTH_RECTANGLE, HEIGHT_RECTANGLE);
+                context.strokeRect(0, 0, WIDTH_RECTANGLE, HEIGHT_RECTANGLE);
+                context.setFill(Color.WHITE);
+                context.setLineWidth(1);
+                for(int centerX : new int[]{12, 24}){
+                    context.fillOval(centerX - CIRCLE_RADIUS, 6 - CIRCLE_RADIUS, 2 * CIRCLE_RADIUS, 2 * CIRCLE_RADIUS);
+                    context.strokeOval(centerX - CIRCLE_RADIUS, 6 - CIRCLE_RADIUS, 2 * CIRCLE_RADIUS, 2 * CIRCLE_RADIUS);
+                }
+            }
+            context.restore();
+        }
+
+        /**
+         * extend the bounds by the ones of the box, with a margin for its stroke and its enlargement
+         */
+        private void addCellBounds(int cell, double[] bounds){
+            double halfWidth = WIDTH_RECTANGLE / 2d + MARGIN;
+            double halfHeight = HEIGHT_RECTANGLE / 2d + MARGIN;
+            double extentX = Math.abs(cellCos[cell]) * halfWidth + Math.abs(cellSin[cell]) * halfHeight;
+            double extentY = Math.abs(cellSin[cell]) * halfWidth + Math.abs(cellCos[cell]) * halfHeight;
+            double centerX = cellX[cell] + WIDTH_RECTANGLE / 2d;
+            double centerY = cellY[cell] + HEIGHT_RECTANGLE / 2d;
+            bounds[0] = Math.min(bounds[0], centerX - extentX);
+            bounds[1] = Math.min(bounds[1], centerY - extentY);
+            bounds[2] = Math.max(bounds[2], centerX + extentX);
+            bounds[3] = Math.max(bounds[3], centerY + extentY);
+        }
+
+        private int column(double x){
+            return Math.max(0, Math.min(bucketColumns - 1, (int) Math.floor(x / BUCKET_SIZE)));
+        }
+
+        private int row(double y){
+            return Math.max(0, Math.min(bucketRows - 1, (int) Math.floor(y / BUCKET_SIZE)));
+        }
+    }
+
+    /**
+     * @return the position of each box read from map.css, by id of box : its translation on x and y and its rotation in degrees
+     * @throws UncheckedIOException if map.css can not be read
+     */
+    private static Map<String, double[]> cellPositions(){
+        Map<String, double[]> positions = new HashMap<>();
+        InputStream stream = CanvasMapViewCreator.class.getClassLoader().getResourceAsStream("map.css");
+        if(stream == null) throw new UncheckedIOException(new IOException("map.css not found"));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null){
+                Matcher matcher = CELL_POSITION.matcher(line.trim());
+                if(matcher.matches()){
+                    positions.put(matcher.group(1), new double[]{Double.parseDouble(matcher.group(2)),
+                            Double.parseDouble(matcher.group(3)), Double.parseDouble(matcher.group(4))});
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return positions;
+    }
+}
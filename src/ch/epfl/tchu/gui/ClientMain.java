@@ -2,8 +2,15 @@ package ch.epfl.tchu.gui;
 
 import ch.epfl.tchu.net.RemotePlayerClient;
 import javafx.application.Application;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Scene;
+import javafx.scene.layout.StackPane;
+import javafx.scene.text.Text;
 import javafx.stage.Stage;
+import javafx.stage.Window;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -15,6 +22,12 @@ public final class ClientMain extends Application {
 
     private final static String DEFAULT_IP = "localhost";
     private final static int DEFAULT_PORT = 5108;
+    private final static String COMPRESSION_ARGUMENT = "compress";
+    //when the JVM is started with -Dtchu.fastStartup=true, a waiting window is shown at once and the resources of the
+    //game window are loaded while the client waits for the game, the startup times being printed
+    private final static boolean FAST_STARTUP = Boolean.getBoolean("tchu.fastStartup");
+    private final static int WAITING_WINDOW_WIDTH = 400;
+    private final static int WAITING_WINDOW_HEIGHT = 100;
 
     /**
      * Launch a standalone application.
@@ -36,8 +49,48 @@ public final class ClientMain extends Application {
 
         if(!arguments.isEmpty() && !arguments.get(0).isEmpty())    {  ipString = arguments.get(0);    }
         if(arguments.size()>=2  && !arguments.get(1).isEmpty())    {   portString = arguments.get(1); }
+        boolean compression = arguments.size()>=3 && arguments.get(2).equals(COMPRESSION_ARGUMENT); //third argument "compress" to compress the messages on slow links
 
-        client(portString,ipString);
+        if(FAST_STARTUP) showWaitingWindow(primaryStage);
+        client(portString,ipString,compression);
+    }
+
+    /**
+     * show a light window until the game window is shown, and load the resources of the game window in the background
+     * @param primaryStage the main window of the application, used as waiting window
+     */
+    private static void showWaitingWindow(Stage primaryStage){
+        primaryStage.setTitle("tChu");
+        primaryStage.setScene(new Scene(new StackPane(new Text(StringsFr.WAITING_FOR_GAME)), WAITING_WINDOW_WIDTH, WAITING_WINDOW_HEIGHT));
+        primaryStage.show();
+        System.out.printf("Startup : waiting window shown after %d ms%n", millisSinceStart());
+
+        Thread preloading = new Thread(() -> {
+            GuiResources.preload();
+            System.out.printf("Startup : resources loaded after %d ms%n", millisSinceStart());
+        }, "preloading");
+        preloading.setDaemon(true);
+        preloading.start();
+
+        //the waiting window is hidden when the game window is shown
+        Window.getWindows().addListener(new ListChangeListener<Window>() {
+            @Override
+            public void onChanged(Change<? extends Window> change) {
+                if(Window.getWindows().stream().anyMatch(window -> window != primaryStage)){
+                    Window.getWindows().removeListener(this);
+                    primaryStage.hide();
+                    System.out.printf("Startup : game window shown after %d ms%n", millisSinceStart());
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the number of milliseconds since the start of the JVM
+     */
+    private static long millisSinceStart(){
+        Instant start = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+        return Duration.between(start, Instant.now()).toMillis();
     }
 
 
@@ -47,11 +100,22 @@ public final class ClientMain extends Application {
      * @param ip the ip of the server hosting the game
      */
     public static void client(String port,String ip){
+        client(port, ip, false);
+    }
+
+    /**
+     * creat a GraphicalPlayerAdapter and a RemotePlayerClient letting the player graphically interact with the server (and the game)
+     * @param port the port of the server to connect on
+     * @param ip the ip of the server hosting the game
+     * @param compression if the client asks the server to compress the messages
+     */
+    public static void client(String port,String ip,boolean compression){
         String ipUsed = ip==null || ip.equals("") ?  DEFAULT_IP : ip;
         int portUsed = port==null || port.equals("") ?  DEFAULT_PORT : Integer.parseInt(port);
 
         GraphicalPlayerAdapter graphicalPlayer = new GraphicalPlayerAdapter();  //creation of the graphicalPlayer of the client player
-        RemotePlayerClient remotePlayerClient = new RemotePlayerClient(graphicalPlayer, ipUsed,portUsed); //creation of the RemotePlayerClient of the graphicalPlayer letting the client sending and getting message
+        RemotePlayerClient remotePlayerClient = new RemotePlayerClient(graphicalPlayer, ipUsed,portUsed,compression); //creation of the RemotePlayerClient of the graphicalPlayer letting the client sending and getting message
+        remotePlayerClient.setReadListener(graphicalPlayer::messageRead); //the latency of the states is measured from the reading of their message
 
         new Thread(remotePlayerClient::run).start(); //run the RemotePlayerClient on a other train as the main app
     }
@@ -2,25 +2,36 @@ package ch.epfl.tchu.gui;
 
 import ch.epfl.tchu.SortedBag;
 import ch.epfl.tchu.game.*;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.beans.InvalidationListener;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.Event;
+import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.ListView;
 import javafx.scene.control.SelectionMode;
 import javafx.scene.control.cell.TextFieldListCell;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import javafx.util.Duration;
 import javafx.util.StringConverter;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import static javafx.application.Platform.isFxApplicationThread;
@@ -40,6 +51,10 @@ public final class GraphicalPlayer {
     private final ObjectProperty<ActionHandlers.ClaimRouteHandler> claimRouteHandlerObjectProperty;
     private final Stage mainWindow;
     private final static int NR_LAST_INFOS = 5;
+    //the routes are drawn on a canvas (see CanvasMapViewCreator) when the JVM is started with -Dtchu.canvasMap=true
+    private final static boolean CANVAS_MAP = Boolean.getBoolean("tchu.canvasMap");
+    private final static Duration OVERLAY_REFRESH = Duration.seconds(1);
+    private final static KeyCode DUMP_KEY = KeyCode.F2; //key writing the measures of the latency to a file
 
 
     /**
@@ -48,6 +63,17 @@ public final class GraphicalPlayer {
      * @param playerNames the name of the players in the game
      */
     public GraphicalPlayer(PlayerId correspondingPlayerId, Map<PlayerId,String> playerNames){
+        this(correspondingPlayerId, playerNames, null);
+    }
+
+    /**
+     * constructor creat all the different part composing the interface and the Property with value null
+     * @param correspondingPlayerId the id of the player to which the GUI belongs
+     * @param playerNames the name of the players in the game
+     * @param latencyMonitor the measures of the latency of the interface, displayed over the map and fed with the
+     *                       duration of the pulses of the window, null to neither measure nor display anything
+     */
+    GraphicalPlayer(PlayerId correspondingPlayerId, Map<PlayerId,String> playerNames, LatencyMonitor latencyMonitor){
         //creation of a new ObservableGameState belonging to the player
         this.observableGameState = new ObservableGameState(correspondingPlayerId);
         //creation of the list containing the last 5 infos received by the player
@@ -60,7 +86,9 @@ public final class GraphicalPlayer {
         this.claimRouteHandlerObjectProperty = new SimpleObjectProperty<>();
 
         //creation of the 3 main nodes constituting the graphic interface
-        Node mapView = MapViewCreator.createMapView(observableGameState, claimRouteHandlerObjectProperty, this::chooseClaimCards); //node corresponding to the map (road, car, map...)
+        Node mapView = CANVAS_MAP
+                ? CanvasMapViewCreator.createMapView(observableGameState, claimRouteHandlerObjectProperty, this::chooseClaimCards)
+                : MapViewCreator.createMapView(observableGameState, claimRouteHandlerObjectProperty, this::chooseClaimCards); //node corresponding to the map (road, car, map...)
         Node cardsView = DecksViewCreator.createCardsView(observableGameState, drawTicketsHandlerObjectProperty, drawCardHandlerObjectProperty); //node corresponding to the cards and tickets that the player can take
         Node handView = DecksViewCreator.createHandView(observableGameState); //node corresponding to the cards and tickets that the player owns
         Node infoView = InfoViewCreator.createInfoView(correspondingPlayerId, playerNames, observableGameState, lastInfos); //node corresponding to the information of the player
@@ -68,12 +96,45 @@ public final class GraphicalPlayer {
         //creation of the main window
         this.mainWindow= new Stage();
         //The node corresponding to the card is placed in the center, corresponding to the cards and tickets that the player can take on the right, the one corresponding to the cards and tickets that the player has in base and the one corresponding to the information of the player on the left
-        BorderPane mainPane = new BorderPane(mapView, null, cardsView, handView, infoView);
-        this.mainWindow.setScene(new Scene(mainPane));
+        BorderPane mainPane = new BorderPane(latencyMonitor == null ? mapView : withLatencyOverlay(mapView, latencyMonitor), null, cardsView, handView, infoView);
+        Scene scene = new Scene(mainPane);
+        if(latencyMonitor != null) monitorLatency(scene, latencyMonitor);
+        this.mainWindow.setScene(scene);
         this.mainWindow.setTitle(String.format("tChu \u2014 %s",playerNames.get(correspondingPlayerId)));//title of the window :  tchu + the name of the player
         this.mainWindow.show();
     }
 
+    /**
+     * @return the map with the measures of the latency over its top left corner, refreshed every OVERLAY_REFRESH
+     */
+    private static Node withLatencyOverlay(Node mapView, LatencyMonitor latencyMonitor){
+        Text overlay = new Text(latencyMonitor.summary());
+        overlay.setMouseTransparent(true); //the routes under the text can still be clicked
+        StackPane.setAlignment(overlay, Pos.TOP_LEFT);
+        Timeline refresh = new Timeline(new KeyFrame(OVERLAY_REFRESH, e -> overlay.setText(latencyMonitor.summary())));
+        refresh.setCycleCount(Animation.INDEFINITE);
+        refresh.play();
+        return new StackPane(mapView, overlay);
+    }
+
+    /**
+     * record the duration of the pulses of the scene (its CSS and its layout, done between the two pulse listeners), and
+     * write the measures to a file of the working directory when DUMP_KEY is pressed
+     */
+    private static void monitorLatency(Scene scene, LatencyMonitor latencyMonitor){
+        long[] pulseStart = new long[1];
+        scene.addPreLayoutPulseListener(() -> pulseStart[0] = System.nanoTime());
+        scene.addPostLayoutPulseListener(() -> latencyMonitor.recordPulse(System.nanoTime() - pulseStart[0]));
+        scene.addEventHandler(KeyEvent.KEY_PRESSED, e -> {
+            if(e.getCode() != DUMP_KEY) return;
+            try {
+                System.out.println("Latency measures written to " + latencyMonitor.dump(Path.of("")).toAbsolutePath());
+            } catch (UncheckedIOException exception) {
+                exception.printStackTrace();
+            }
+        });
+    }
+
     /**
      * create a window with the owner of the game window
      * @param title the title of the window to create
@@ -200,12 +261,12 @@ public final class GraphicalPlayer {
 
     /**
      * allows to update the game state
-     * @param publicGameState the new public state of the game
-     * @param playerState the new private state of the player to which the class (GraphicalPlayer) belongs
+     * @param changes the changes from the last state to the new one, computed outside of the JavaFX thread by a
+     *                ObservableGameState.Differ of the player
      */
-    public void setState(PublicGameState publicGameState, PlayerState playerState){
+    public void setState(ObservableGameState.Changes changes){
         assert isFxApplicationThread();
-        observableGameState.setState(publicGameState, playerState);
+        observableGameState.apply(changes);
     }
 
     /**
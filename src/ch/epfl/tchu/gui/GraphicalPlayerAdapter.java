@@ -3,10 +3,12 @@ package ch.epfl.tchu.gui;
 import ch.epfl.tchu.SortedBag;
 import ch.epfl.tchu.game.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static ch.epfl.tchu.game.Player.TurnKind.*;
 import static javafx.application.Platform.runLater;
@@ -18,6 +20,18 @@ import static javafx.application.Platform.runLater;
  */
 final public class GraphicalPlayerAdapter implements Player {
     private GraphicalPlayer graphicalPlayer;
+    private ObservableGameState.Differ stateDiffer;     //used by the thread of the game, never by the JavaFX thread
+
+    //the state changes and the infos waiting for the JavaFX thread, applied by a single task per burst
+    private final Object lock = new Object();
+    private ObservableGameState.Changes pendingChanges; //null if no task applying them is waiting
+    private final List<String> pendingInfos;           //empty if no task displaying them is waiting
+    private long pendingReceivedTime;                  //time the oldest of the pending states has been received
+
+    //measures of the latency of the interface, null if they are not displayed (see LatencyMonitor)
+    private final LatencyMonitor latencyMonitor;
+    private final AtomicInteger queuedTasks;           //number of tasks posted to the JavaFX thread not started yet
+    private volatile long messageReadTime;             //time the last message has been read, 0 in a local game
     private final BlockingQueue<TurnKind> turnKindQueue;
     private final BlockingQueue<SortedBag<Ticket>> ticketsQueue;
     private final BlockingQueue<Integer> cardQueue;
@@ -25,6 +39,8 @@ final public class GraphicalPlayerAdapter implements Player {
     private final BlockingQueue<Route> routesQueue;
 
     private final static int ARRAY_BLOCKING_QUEUE_CAPACITY = 1;
+    //the latency of the interface is measured and displayed when the JVM is started with -Dtchu.latencyOverlay=true
+    private final static boolean LATENCY_OVERLAY = Boolean.getBoolean("tchu.latencyOverlay");
 
     /**
      * constructor
@@ -36,6 +52,18 @@ final public class GraphicalPlayerAdapter implements Player {
         this.cardQueue = new ArrayBlockingQueue<>(ARRAY_BLOCKING_QUEUE_CAPACITY);
         this.cardsBagQueue = new ArrayBlockingQueue<>(ARRAY_BLOCKING_QUEUE_CAPACITY);
         this.routesQueue = new ArrayBlockingQueue<>(ARRAY_BLOCKING_QUEUE_CAPACITY);
+        this.pendingInfos = new ArrayList<>();
+        this.latencyMonitor = LATENCY_OVERLAY ? new LatencyMonitor() : null;
+        this.queuedTasks = new AtomicInteger();
+    }
+
+    /**
+     * called by the RemotePlayerClient each time a message is read, before the method of the player corresponding to
+     * the message is called
+     * @param nanos the time the message has been read, given by System.nanoTime
+     */
+    public void messageRead(long nanos){
+        messageReadTime = nanos;
     }
 
     /**
@@ -46,29 +74,64 @@ final public class GraphicalPlayerAdapter implements Player {
      */
     @Override
     public void initPlayers(PlayerId ownId, Map<PlayerId, String> playerNames) {
-        runLater(() -> this.graphicalPlayer = new GraphicalPlayer(ownId, playerNames)
+        stateDiffer = new ObservableGameState.Differ(ownId);
+        post(() -> this.graphicalPlayer = new GraphicalPlayer(ownId, playerNames, latencyMonitor)
         );
     }
 
     /**
      * called each time a piece of information must be communicated to the player during the game;
-     * this information is given in the form of a character string
+     * this information is given in the form of a character string.
+     * The infos received before the JavaFX thread displays them are displayed by the same task
      * @param info the text string to display to the player
      */
     @Override
     public void receiveInfo(String info) {
-        runLater(() -> graphicalPlayer.receiveInfo(info));
+        synchronized (lock){
+            pendingInfos.add(info);
+            if(pendingInfos.size() > 1) return; //a task will display it with the previous ones
+        }
+        post(() -> {
+            List<String> infos;
+            synchronized (lock){
+                infos = List.copyOf(pendingInfos);
+                pendingInfos.clear();
+            }
+            infos.forEach(graphicalPlayer::receiveInfo);
+        });
     }
 
     /**
      * called whenever the game state has changed, to inform the player of the public component of the
-     * game state, newState, as well as of its own state
+     * game state, newState, as well as of its own state.
+     * The changes of the state are computed on the calling thread, the JavaFX thread only applies them : the changes
+     * of the states received before the JavaFX thread applies them are merged, so that only the last state is applied
      * @param publicGameState the new State of the game
      * @param ownState the new state of the player
      */
     @Override
     public void updateState(PublicGameState publicGameState, PlayerState ownState) {
-        runLater(() -> graphicalPlayer.setState(publicGameState,ownState));
+        long receivedTime = messageReadTime != 0 ? messageReadTime : System.nanoTime();
+        ObservableGameState.Changes changes = stateDiffer.changesTo(publicGameState, ownState);
+        synchronized (lock){
+            if(pendingChanges != null){ //a task will apply them with the previous ones
+                pendingChanges = pendingChanges.followedBy(changes);
+                return;
+            }
+            pendingChanges = changes;
+            pendingReceivedTime = receivedTime;
+        }
+        post(() -> {
+            ObservableGameState.Changes latestChanges;
+            long oldestReceivedTime;
+            synchronized (lock){
+                latestChanges = pendingChanges;
+                oldestReceivedTime = pendingReceivedTime;
+                pendingChanges = null;
+            }
+            graphicalPlayer.setState(latestChanges);
+            if(latencyMonitor != null) latencyMonitor.recordStateLatency(oldestReceivedTime, System.nanoTime());
+        });
     }
 
     /**
@@ -85,7 +148,7 @@ final public class GraphicalPlayerAdapter implements Player {
                 throw new Error();
             }
         };
-        runLater(() -> graphicalPlayer.chooseTickets(tickets, chooseTicketsHandler));
+        post(() -> graphicalPlayer.chooseTickets(tickets, chooseTicketsHandler));
     }
 
 
@@ -137,8 +200,13 @@ final public class GraphicalPlayerAdapter implements Player {
             }
         };
 
+        //choices made too late for a previous turn (the deadline of the game expired) must not be used for this one
+        cardQueue.clear();
+        routesQueue.clear();
+        cardsBagQueue.clear();
+
         //call of startTurn from the graphicalPlayer with the handler redefined putting the action done in a queue
-        runLater(() -> graphicalPlayer.startTurn(drawTicketsHandler,drawCardHandler,claimRouteHandler));
+        post(() -> graphicalPlayer.startTurn(drawTicketsHandler,drawCardHandler,claimRouteHandler));
         try {
             return turnKindQueue.take();
         } catch (InterruptedException e) {
@@ -177,7 +245,7 @@ final public class GraphicalPlayerAdapter implements Player {
                         throw new Error();
                     }
                 };
-                runLater(() -> graphicalPlayer.drawCard(drawCardHandler));
+                post(() -> graphicalPlayer.drawCard(drawCardHandler));
             }
             return cardQueue.take();
 
@@ -230,7 +298,7 @@ final public class GraphicalPlayerAdapter implements Player {
                 throw new Error();
             }
         };
-        runLater(() -> graphicalPlayer.chooseAdditionalCards(options, chooseCardsHandler));
+        post(() -> graphicalPlayer.chooseAdditionalCards(options, chooseCardsHandler));
 
         try {
             return cardsBagQueue.take();  //blocking while waiting for the player to make his choice (handler executed and chosen cards put in the queue)
@@ -238,4 +306,17 @@ final public class GraphicalPlayerAdapter implements Player {
            throw new Error();
         }
     }
+
+    /**
+     * post the task to the JavaFX thread, counting the tasks waiting for it
+     * @param task the task
+     */
+    private void post(Runnable task){
+        int depth = queuedTasks.incrementAndGet();
+        if(latencyMonitor != null) latencyMonitor.recordQueueDepth(depth);
+        runLater(() -> {
+            queuedTasks.decrementAndGet();
+            task.run();
+        });
+    }
 }
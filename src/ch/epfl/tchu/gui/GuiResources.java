@@ -0,0 +1,46 @@
+package ch.epfl.tchu.gui;
+
+import ch.epfl.tchu.game.ChMap;
+import ch.epfl.tchu.game.Ticket;
+import javafx.scene.image.Image;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * the heavy resources of the interface, loaded once and shared by all the views : they can be loaded in advance by
+ * preload, on another thread than the JavaFX one, while the client waits for the game to begin.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class GuiResources {
+
+    private final static String MAP_IMAGE = "map.png";
+    private final static Map<String, Image> IMAGES = new ConcurrentHashMap<>();
+
+    private GuiResources(){}
+
+    /**
+     * @param name the name of the image in the resources
+     * @return the image, loaded at the first call (a call made while another thread loads it waits for the end of the loading)
+     */
+    static Image image(String name){
+        return IMAGES.computeIfAbsent(name, Image::new);
+    }
+
+    /**
+     * @return the background image of the map
+     */
+    static Image mapImage(){
+        return image(MAP_IMAGE);
+    }
+
+    /**
+     * load the background image of the map, and create the stations, the routes and the tickets of ChMap with their texts
+     */
+    static void preload(){
+        mapImage();
+        ChMap.routes();
+        ChMap.tickets().forEach(Ticket::text);
+    }
+}
@@ -0,0 +1,88 @@
+package ch.epfl.tchu.gui;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * measures of the reactivity of the interface of a player, kept in rolling histograms :
+ * - the duration of the pulses of JavaFX (the CSS and the layout of the scene, between the pulse listeners of the scene),
+ * - the latency of a state, from the reading of its message on the socket (or its reception by the adapter in a local
+ *   game) to the end of its application to the ObservableGameState on the JavaFX thread,
+ * - the number of tasks of the adapter waiting for the JavaFX thread, measured each time a task is posted.
+ * The measures can be dumped to a file, to be joined to a bug report.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class LatencyMonitor {
+
+    private final static int WINDOW_SIZE = 4096;
+    private final static long NANOS_PER_MICRO = 1_000;
+    private final static DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final RollingHistogram pulseDurations;
+    private final RollingHistogram stateLatencies;
+    private final RollingHistogram queueDepths;
+
+    LatencyMonitor(){
+        this.pulseDurations = new RollingHistogram(WINDOW_SIZE);
+        this.stateLatencies = new RollingHistogram(WINDOW_SIZE);
+        this.queueDepths = new RollingHistogram(WINDOW_SIZE);
+    }
+
+    /**
+     * @param nanos the duration of a pulse, in nanoseconds
+     */
+    void recordPulse(long nanos){
+        pulseDurations.record(nanos / NANOS_PER_MICRO);
+    }
+
+    /**
+     * @param receivedNanos the time (given by System.nanoTime) the message of the state has been read
+     * @param appliedNanos the time the state has been applied
+     */
+    void recordStateLatency(long receivedNanos, long appliedNanos){
+        stateLatencies.record((appliedNanos - receivedNanos) / NANOS_PER_MICRO);
+    }
+
+    /**
+     * @param depth the number of tasks waiting for the JavaFX thread, the posted one included
+     */
+    void recordQueueDepth(int depth){
+        queueDepths.record(depth);
+    }
+
+    /**
+     * @return the text of the overlay : the median and the 99th percentile of each measure
+     */
+    String summary(){
+        long[] pulses = pulseDurations.percentiles(0.5, 0.99);
+        long[] latencies = stateLatencies.percentiles(0.5, 0.99);
+        long[] depths = queueDepths.percentiles(0.5, 1);
+        return String.format("pulse p50 %.1f ms p99 %.1f ms%nstate p50 %.1f ms p99 %.1f ms%nqueue p50 %d max %d",
+                pulses[0] / 1000d, pulses[1] / 1000d, latencies[0] / 1000d, latencies[1] / 1000d, depths[0], depths[1]);
+    }
+
+    /**
+     * write the histograms of all the measures to a new file
+     * @param directory the directory of the file
+     * @return the path of the file
+     * @throws UncheckedIOException if the file can not be written
+     */
+    Path dump(Path directory){
+        Path file = directory.resolve(String.format("tchu-latency-%s.txt", LocalDateTime.now().format(FILE_DATE)));
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            pulseDurations.writeTo(writer, "pulse duration", "us");
+            stateLatencies.writeTo(writer, "state latency", "us");
+            queueDepths.writeTo(writer, "runLater queue depth", "tasks");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return file;
+    }
+}
@@ -7,7 +7,6 @@ import ch.epfl.tchu.game.Route;
 import javafx.beans.property.ObjectProperty;
 import javafx.scene.Group;
 import javafx.scene.Node;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.scene.shape.Circle;
@@ -40,7 +39,7 @@ abstract class MapViewCreator {
 
         //background image
         ImageView background = new ImageView();
-        background.setImage(new Image("map.png"));
+        background.setImage(GuiResources.mapImage());
         map.getChildren().add(background);
 
         //the groups for each route
@@ -51,8 +50,11 @@ abstract class MapViewCreator {
             routeElemGroup.getStyleClass().addAll("route", routeElem.level().toString(), routeElem.color() == null ? "NEUTRAL" : routeElem.color().toString());
             map.getChildren().add(routeElemGroup);
 
-            //listener
-            observableGameState.routesOwner(routeElem).addListener((o,oN,oV) -> routeElemGroup.getStyleClass().add(oV.toString()));
+            //listener : the class of the previous owner is removed, so that the classes do not pile up over the states
+            observableGameState.routesOwner(routeElem).addListener((o,oN,oV) -> {
+                if(oN != null) routeElemGroup.getStyleClass().remove(oN.toString());
+                if(oV != null) routeElemGroup.getStyleClass().add(oV.toString());
+            });
 
             //All the boxes composing the route to the number of route length of 1->route Length
             for(int i=1;i<=routeElem.length();i++){
@@ -4,8 +4,6 @@ import ch.epfl.tchu.SortedBag;
 import ch.epfl.tchu.game.*;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.collections.ObservableMap;
 
 import java.util.*;
 
@@ -40,6 +38,13 @@ public final class ObservableGameState {
     private final Map<Route,BooleanProperty> routeCapturable; //= new EnumMap<>(globalPlayerState);
 
     private final static int INITIAL_INT_VALUE = 0;
+    private final static int NO_CHANGE = -1; //the counts and percentages being positive
+    //index of the values of each player in the changes
+    private final static int TICKET_COUNT = 0;
+    private final static int CARD_COUNT = 1;
+    private final static int CAR_COUNT = 2;
+    private final static int CLAIM_POINTS = 3;
+    private final static int PLAYER_VALUES_COUNT = 4;
 
     /**
      * constructor initializing all properties to their default value :
@@ -68,7 +73,7 @@ public final class ObservableGameState {
 
         routesOwner = new HashMap<>();
         routeCapturable = new HashMap<>();
-        for(Route r : ChMap.routes()){ //we initialize the two maps
+        for(Route r : GameMap.active().routes()){ //we initialize the two maps
             routesOwner.put(r, new SimpleObjectProperty<>());
             routeCapturable.put(r, new SimpleBooleanProperty(false));
         }
@@ -97,85 +102,247 @@ public final class ObservableGameState {
     }
 
     /**
-     * enable to get the owner of the route in the publicGameState
-     * @param publicGameState the state of the game in which we want to know the owner of the route
-     * @param r the route
-     * @return null if the route has no owner else the PlayerId
+     * apply on the JavaFX thread the changes computed by a Differ of the player, only the properties whose value has
+     * changed being written
+     * @param changes the changes from the last state applied to the new one
      */
-    private PlayerId routeOwner(PublicGameState publicGameState,Route r){
-        for(PlayerId player : PlayerId.getAllPlayer()){
-            if(publicGameState.playerState(player).routes().contains(r)){
-                return player; //if the route is contain in the route in hand from one of the player, we return the corresponding player else we try another player
-            }
+    public void apply(Changes changes){
+        this.publicGameState = changes.gameState;
+        this.playerState = changes.playerState;
+        if(changes.ticketPercentage != NO_CHANGE) ticketPercentageRemaining.set(changes.ticketPercentage);
+        if(changes.cardPercentage != NO_CHANGE) cardPercentageRemaining.set(changes.cardPercentage);
+
+        for(int i=0;i<changes.faceUpSlots.length;i++){
+            faceUpCards.get(changes.faceUpSlots[i]).set(changes.faceUpCards[i]);
         }
-        return null;//if no player own the route we return null by default
-    }
 
-    /**
-     * update all the property with the new information contained in publicGameState and playerState
-     * @param publicGameState the public state of the game
-     * @param playerState the state of the player of the ObservableGameState
-     */
-    public void setState(PublicGameState publicGameState,PlayerState playerState){
-        this.publicGameState = publicGameState;
-        this.playerState = playerState;
-        ticketPercentageRemaining.set((int)((100d/ChMap.tickets().size())*publicGameState.ticketsCount()));
-        cardPercentageRemaining.set((int)((100d/Constants.TOTAL_CARDS_COUNT)*publicGameState.cardState().deckSize()));
+        List<Route> routes = GameMap.active().routes();
+        for(int i=0;i<changes.ownedRoutes.length;i++){
+            routesOwner.get(routes.get(changes.ownedRoutes[i])).set(changes.routeOwners[i]);
+        }
+        for(int i=0;i<changes.capturableRoutes.length;i++){
+            routeCapturable.get(routes.get(changes.capturableRoutes[i])).set(changes.capturable[i]);
+        }
 
-        //we set the new face up cards
-        for (int slot : FACE_UP_CARD_SLOTS) {
-            Card newCard = publicGameState.cardState().faceUpCard(slot);
-            faceUpCards.get(slot).set(newCard);
+        for(PlayerId player : PlayerId.getAllPlayer()){
+            int[] values = changes.playerValues[player.ordinal()];
+            if(values == null) continue;
+            nbrTicketInHand.get(player).set(values[TICKET_COUNT]);
+            nbrCardInHand.get(player).set(values[CARD_COUNT]);
+            nbrWagonPlayer.get(player).set(values[CAR_COUNT]);
+            nbrPointObtained.get(player).set(values[CLAIM_POINTS]);
         }
 
+        if(changes.ticketPoints != null) ticketsPlayerPoints.set(FXCollections.observableMap(new HashMap<>(changes.ticketPoints)));
+        //to be placed after the ticketsPlayerPoints because the graphic interface update of the tickets use it
+        if(changes.tickets != null) ticketPlayer.set(FXCollections.observableArrayList(changes.tickets));
 
-        for (Route r : ChMap.routes()) {
-            //we get the owner of the route
-            PlayerId routeOwner = routeOwner(publicGameState,r);
-            routesOwner.get(r).set(routeOwner);//we set the property that contain this value
+        for(Card card : Card.ALL){
+            if(changes.cardCounts[card.ordinal()] != NO_CHANGE) nbrOfCardTypeInHand.get(card).set(changes.cardCounts[card.ordinal()]);
+        }
+    }
 
-            if(routeOwner ==null){  //his not owned by anyone
-                routesOwner.get(r).set(null);//if the route is not claimed, his owner is null
-                //to be claimable by the player, the player has to be the current player , the route have to be in the sense of PlayerState claimable and as its twin not been owned by a player
-                boolean routeClaimedBoolean = playerId==publicGameState.currentPlayerId() && playerState.canClaimRoute(r); // => the player has to be the current player , the route have to be in the sense of PlayerState claimable
-                Route twinRoute = r.getTwin();
-                if(twinRoute!=null&&routeClaimedBoolean){ //has a twin and match the precedent condition claimable
-                    routeClaimedBoolean = routeOwner(publicGameState,twinRoute)==null; //his twin as no owner
-                }
-                routeCapturable.get(r).set(routeClaimedBoolean);
-            }
-            else{
-                routeCapturable.get(r).set(false);//if the route has already an owner she isn't claimable
-            }
+    /**
+     * the changes between two states seen by a player, computed by a Differ outside of the JavaFX thread and applied to the
+     * properties by apply. A change set is immutable.
+     */
+    public static final class Changes {
+        private final PublicGameState gameState;
+        private final PlayerState playerState;
+        private final int ticketPercentage;             //NO_CHANGE if unchanged
+        private final int cardPercentage;               //NO_CHANGE if unchanged
+        private final int[] faceUpSlots;                //the changed slots and their new cards
+        private final Card[] faceUpCards;
+        private final int[] ownedRoutes;                //the indexes in the routes of the active map of the routes whose owner changed, and their owners
+        private final PlayerId[] routeOwners;
+        private final int[] capturableRoutes;           //the indexes of the routes whose claimability changed, and the new values
+        private final boolean[] capturable;
+        private final int[][] playerValues;             //per player ordinal, the new values (see TICKET_COUNT...), null if unchanged
+        private final Map<Ticket, Integer> ticketPoints; //null if unchanged
+        private final List<Ticket> tickets;             //null if unchanged
+        private final int[] cardCounts;                 //per card ordinal, NO_CHANGE if unchanged
+
+        private Changes(PublicGameState gameState, PlayerState playerState, int ticketPercentage, int cardPercentage,
+                        int[] faceUpSlots, Card[] faceUpCards, int[] ownedRoutes, PlayerId[] routeOwners,
+                        int[] capturableRoutes, boolean[] capturable, int[][] playerValues,
+                        Map<Ticket, Integer> ticketPoints, List<Ticket> tickets, int[] cardCounts){
+            this.gameState = gameState;
+            this.playerState = playerState;
+            this.ticketPercentage = ticketPercentage;
+            this.cardPercentage = cardPercentage;
+            this.faceUpSlots = faceUpSlots;
+            this.faceUpCards = faceUpCards;
+            this.ownedRoutes = ownedRoutes;
+            this.routeOwners = routeOwners;
+            this.capturableRoutes = capturableRoutes;
+            this.capturable = capturable;
+            this.playerValues = playerValues;
+            this.ticketPoints = ticketPoints;
+            this.tickets = tickets;
+            this.cardCounts = cardCounts;
         }
 
-        //set the different Game properties depending on the publicGameState for each player
-        for(PlayerId player : PlayerId.getAllPlayer()){
-            nbrTicketInHand.get(player).set(publicGameState.playerState(player).ticketCount());
-            nbrCardInHand.get(player).set(publicGameState.playerState(player).cardCount());
-            nbrWagonPlayer.get(player).set(publicGameState.playerState(player).carCount());
-            nbrPointObtained.get(player).set(publicGameState.playerState(player).claimPoints());
+        /**
+         * @param next the changes computed just after these ones
+         * @return the changes equivalent to applying these changes then the next ones, so that only the last of several
+         * pending states has to be applied
+         */
+        public Changes followedBy(Changes next){
+            Map<Integer, Card> faceUp = new TreeMap<>();
+            for(int i=0;i<faceUpSlots.length;i++) faceUp.put(faceUpSlots[i], faceUpCards[i]);
+            for(int i=0;i<next.faceUpSlots.length;i++) faceUp.put(next.faceUpSlots[i], next.faceUpCards[i]);
+            Map<Integer, PlayerId> owners = new TreeMap<>();
+            for(int i=0;i<ownedRoutes.length;i++) owners.put(ownedRoutes[i], routeOwners[i]);
+            for(int i=0;i<next.ownedRoutes.length;i++) owners.put(next.ownedRoutes[i], next.routeOwners[i]);
+            Map<Integer, Boolean> capturables = new TreeMap<>();
+            for(int i=0;i<capturableRoutes.length;i++) capturables.put(capturableRoutes[i], capturable[i]);
+            for(int i=0;i<next.capturableRoutes.length;i++) capturables.put(next.capturableRoutes[i], next.capturable[i]);
+
+            int[][] mergedPlayerValues = new int[playerValues.length][];
+            for(int i=0;i<playerValues.length;i++) mergedPlayerValues[i] = next.playerValues[i] != null ? next.playerValues[i] : playerValues[i];
+            int[] mergedCardCounts = new int[cardCounts.length];
+            for(int i=0;i<cardCounts.length;i++) mergedCardCounts[i] = next.cardCounts[i] != NO_CHANGE ? next.cardCounts[i] : cardCounts[i];
+
+            Card[] mergedFaceUpCards = faceUp.values().toArray(new Card[0]);
+            PlayerId[] mergedOwners = owners.values().toArray(new PlayerId[0]);
+            boolean[] mergedCapturable = new boolean[capturables.size()];
+            int i = 0;
+            for(boolean value : capturables.values()) mergedCapturable[i++] = value;
+
+            return new Changes(next.gameState, next.playerState,
+                    next.ticketPercentage != NO_CHANGE ? next.ticketPercentage : ticketPercentage,
+                    next.cardPercentage != NO_CHANGE ? next.cardPercentage : cardPercentage,
+                    faceUp.keySet().stream().mapToInt(Integer::intValue).toArray(), mergedFaceUpCards,
+                    owners.keySet().stream().mapToInt(Integer::intValue).toArray(), mergedOwners,
+                    capturables.keySet().stream().mapToInt(Integer::intValue).toArray(), mergedCapturable,
+                    mergedPlayerValues,
+                    next.ticketPoints != null ? next.ticketPoints : ticketPoints,
+                    next.tickets != null ? next.tickets : tickets,
+                    mergedCardCounts);
         }
+    }
 
+    /**
+     * computes the changes between the successive states seen by a player, outside of the JavaFX thread : the owners of
+     * the routes, the routes the player can claim and the points of the tickets are computed here, so that the JavaFX
+     * thread only writes the properties that changed. The changes are relative to the previous state given to the
+     * differ, so they must all be applied, in the order they were computed.
+     * A differ is not thread safe, it must be called by one thread at a time.
+     */
+    public static final class Differ {
+        private final PlayerId playerId;
+        private final LegalMoves legalMoves;
+
+        //the values of the previous state, as applied to the properties once its changes are applied
+        private PlayerState playerState;
+        private int ticketPercentage;
+        private int cardPercentage;
+        private final Card[] faceUpCards;
+        private final PlayerId[] routeOwners;
+        private final BitSet capturable;
+        private final int[][] playerValues;
+        private final int[] cardCounts;
+
+        /**
+         * @param playerId the player seeing the states, whose ObservableGameState has all its properties with their
+         *                 default value
+         */
+        public Differ(PlayerId playerId){
+            this.playerId = playerId;
+            this.legalMoves = new LegalMoves();
+            this.ticketPercentage = INITIAL_INT_VALUE;
+            this.cardPercentage = INITIAL_INT_VALUE;
+            this.faceUpCards = new Card[FACE_UP_CARD_SLOTS.size()];
+            this.routeOwners = new PlayerId[GameMap.active().routes().size()];
+            this.capturable = new BitSet(GameMap.active().routes().size());
+            this.playerValues = new int[PlayerId.values().length][PLAYER_VALUES_COUNT];
+            this.cardCounts = new int[Card.COUNT];
+        }
 
+        /**
+         * @param publicGameState the new public state of the game
+         * @param playerState the new state of the player
+         * @return the changes from the previous state given to the differ to the new one
+         */
+        public Changes changesTo(PublicGameState publicGameState, PlayerState playerState){
+            int newTicketPercentage = (int)((100d/GameMap.active().tickets().size())*publicGameState.ticketsCount());
+            int newCardPercentage = (int)((100d/Constants.TOTAL_CARDS_COUNT)*publicGameState.cardState().deckSize());
+            int ticketPercentageChange = newTicketPercentage == ticketPercentage ? NO_CHANGE : newTicketPercentage;
+            int cardPercentageChange = newCardPercentage == cardPercentage ? NO_CHANGE : newCardPercentage;
+            ticketPercentage = newTicketPercentage;
+            cardPercentage = newCardPercentage;
+
+            List<Integer> faceUpSlots = new ArrayList<>();
+            for (int slot : FACE_UP_CARD_SLOTS) {
+                Card card = publicGameState.cardState().faceUpCard(slot);
+                if(card != faceUpCards[slot]) faceUpSlots.add(slot);
+                faceUpCards[slot] = card;
+            }
+            Card[] newFaceUpCards = new Card[faceUpSlots.size()];
+            for(int i=0;i<newFaceUpCards.length;i++) newFaceUpCards[i] = faceUpCards[faceUpSlots.get(i)];
 
-        Map<Ticket,Integer> ticketPointMap = new HashMap<>();
-        for(Ticket ticket : playerState.tickets()){
-            ticketPointMap.put(ticket,ticket.points(playerState.stationConnectivityPlayer()));
-        }
-        ObservableMap<Ticket,Integer> observableMap = FXCollections.observableMap(ticketPointMap);
-        ticketsPlayerPoints.set(observableMap);
+            //the owners of the routes, an owner being removed only if the state is the one of another game
+            PlayerId[] newRouteOwners = new PlayerId[routeOwners.length];
+            for(PlayerId player : PlayerId.getAllPlayer()){
+                for(Route route : publicGameState.playerState(player).routes()) newRouteOwners[LegalMoves.indexOf(route)] = player;
+            }
+            List<Integer> ownedRoutes = new ArrayList<>();
+            for(int i=0;i<routeOwners.length;i++){
+                if(newRouteOwners[i] != routeOwners[i]) ownedRoutes.add(i);
+            }
+            PlayerId[] changedOwners = new PlayerId[ownedRoutes.size()];
+            for(int i=0;i<changedOwners.length;i++) changedOwners[i] = newRouteOwners[ownedRoutes.get(i)];
+            System.arraycopy(newRouteOwners, 0, routeOwners, 0, routeOwners.length);
+
+            //to be claimable by the player, the player has to be the current player and the route has to be claimable in the sense of LegalMoves
+            BitSet newCapturable = new BitSet(routeOwners.length);
+            if(playerId == publicGameState.currentPlayerId()){
+                legalMoves.update(publicGameState, playerState);
+                newCapturable.or(legalMoves.claimableRoutes());
+            }
+            BitSet capturableChanges = (BitSet) newCapturable.clone();
+            capturableChanges.xor(capturable);
+            int[] capturableRoutes = capturableChanges.stream().toArray();
+            boolean[] newCapturableValues = new boolean[capturableRoutes.length];
+            for(int i=0;i<capturableRoutes.length;i++) newCapturableValues[i] = newCapturable.get(capturableRoutes[i]);
+            capturable.clear();
+            capturable.or(newCapturable);
+
+            int[][] playerValuesChanges = new int[playerValues.length][];
+            for(PlayerId player : PlayerId.getAllPlayer()){
+                PublicPlayerState state = publicGameState.playerState(player);
+                int[] values = {state.ticketCount(), state.cardCount(), state.carCount(), state.claimPoints()};
+                if(!Arrays.equals(values, playerValues[player.ordinal()])) playerValuesChanges[player.ordinal()] = values;
+                playerValues[player.ordinal()] = values;
+            }
 
+            //the points of the tickets only change with the tickets and the routes of the player
+            Map<Ticket, Integer> ticketPoints = null;
+            List<Ticket> tickets = null;
+            if(this.playerState == null || !this.playerState.tickets().equals(playerState.tickets())
+                    || !this.playerState.routes().equals(playerState.routes())){
+                StationConnectivity connectivity = playerState.stationConnectivityPlayer();
+                ticketPoints = new HashMap<>();
+                for(Ticket ticket : playerState.tickets()){
+                    ticketPoints.put(ticket, ticket.points(connectivity));
+                }
+                ticketPoints = Collections.unmodifiableMap(ticketPoints);
+                tickets = playerState.tickets().toList();
+            }
 
-        //add all the ticket owned by the player to the observable game state property
-        ObservableList<Ticket> observableList = FXCollections.observableArrayList(playerState.tickets().toList());
-        ticketPlayer.set(observableList); //to be placed after the ticketsPlayerConnected.set(observableMap); because the graphic interface update use it
+            int[] cardCountsChanges = new int[Card.COUNT];
+            for(Card card : Card.ALL){
+                int count = playerState.cards().countOf(card);
+                cardCountsChanges[card.ordinal()] = count == cardCounts[card.ordinal()] ? NO_CHANGE : count;
+                cardCounts[card.ordinal()] = count;
+            }
+            this.playerState = playerState;
 
-        //set how many card of each type the player has
-        for(Card card: Card.ALL) {
-            nbrOfCardTypeInHand.get(card).set(playerState.cards().countOf(card));
+            return new Changes(publicGameState, playerState, ticketPercentageChange, cardPercentageChange,
+                    faceUpSlots.stream().mapToInt(Integer::intValue).toArray(), newFaceUpCards,
+                    ownedRoutes.stream().mapToInt(Integer::intValue).toArray(), changedOwners,
+                    capturableRoutes, newCapturableValues, playerValuesChanges, ticketPoints, tickets, cardCountsChanges);
         }
-
     }
 
 
@@ -0,0 +1,100 @@
+package ch.epfl.tchu.gui;
+
+import ch.epfl.tchu.Preconditions;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * histogram of the last values of a measure (the oldest value being forgotten when a new one is recorded once the window
+ * is full), the values being counted in buckets of powers of two : bucket b counts the values between 2^(b-1) included
+ * and 2^b excluded, bucket 0 the value 0.
+ * The values can be recorded and read by several threads.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class RollingHistogram {
+
+    private final static int BUCKET_COUNT = Long.SIZE + 1;
+
+    private final Object lock = new Object();
+    private final long[] window;            //the last values, the next one replacing the one at index next
+    private final int[] bucketCounts;
+    private int next;
+    private int size;
+    private long total;                     //number of values recorded since the creation, forgotten ones included
+
+    /**
+     * @param capacity the number of last values kept
+     * @throws IllegalArgumentException if the capacity is not strictly positive
+     */
+    RollingHistogram(int capacity){
+        Preconditions.checkArgument(capacity > 0);
+        this.window = new long[capacity];
+        this.bucketCounts = new int[BUCKET_COUNT];
+    }
+
+    /**
+     * record a value, forgetting the oldest one if the window is full
+     * @param value the value, a negative value being recorded as 0
+     */
+    void record(long value){
+        long recorded = Math.max(0, value);
+        synchronized (lock){
+            if(size == window.length) bucketCounts[bucket(window[next])]--;
+            else size++;
+            window[next] = recorded;
+            bucketCounts[bucket(recorded)]++;
+            next = (next + 1) % window.length;
+            total++;
+        }
+    }
+
+    /**
+     * @param fractions fractions between 0 and 1, 0.5 for the median for example
+     * @return the percentile of each fraction among the values of the window, 0 if there is none
+     * @throws IllegalArgumentException if a fraction is not between 0 and 1
+     */
+    long[] percentiles(double... fractions){
+        long[] values;
+        synchronized (lock){
+            values = Arrays.copyOf(window, size);
+        }
+        Arrays.sort(values);
+        long[] percentiles = new long[fractions.length];
+        for(int i=0;i<fractions.length;i++){
+            Preconditions.checkArgument(fractions[i] >= 0 && fractions[i] <= 1);
+            percentiles[i] = values.length == 0 ? 0 : values[Math.max(0, (int) Math.ceil(fractions[i] * values.length) - 1)];
+        }
+        return percentiles;
+    }
+
+    /**
+     * write the number of values, their percentiles and the count of each non empty bucket
+     * @param writer the writer
+     * @param name the name of the measure
+     * @param unit the unit of the values
+     */
+    void writeTo(PrintWriter writer, String name, String unit){
+        int[] counts;
+        int windowSize;
+        long recorded;
+        synchronized (lock){
+            counts = bucketCounts.clone();
+            windowSize = size;
+            recorded = total;
+        }
+        long[] percentiles = percentiles(0.5, 0.9, 0.99, 1);
+        writer.printf("%s (%s) : %d values recorded, last %d : p50 %d, p90 %d, p99 %d, max %d%n", name, unit, recorded,
+                windowSize, percentiles[0], percentiles[1], percentiles[2], percentiles[3]);
+        for(int b=0;b<BUCKET_COUNT;b++){
+            if(counts[b] == 0) continue;
+            long low = b == 0 ? 0 : 1L << (b - 1);
+            writer.printf("  [%d, %s) %d%n", low, b == 0 ? "1" : b == Long.SIZE ? "max" : Long.toString(1L << b), counts[b]);
+        }
+    }
+
+    private static int bucket(long value){
+        return Long.SIZE - Long.numberOfLeadingZeros(value);
+    }
+}
@@ -1,8 +1,10 @@
 package ch.epfl.tchu.gui;
 
 import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.extension.BotPlayer;
 import ch.epfl.tchu.game.*;
 import ch.epfl.tchu.net.RemotePlayerProxy;
+import ch.epfl.tchu.net.SpectatorBroadcaster;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.control.Alert;
@@ -10,6 +12,7 @@ import javafx.stage.Stage;
 
 import java.io.*;
 import java.net.*;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -23,6 +26,14 @@ public final class ServerMain extends Application {
 
     private final static int DEFAULT_PORT = 5108;
 
+    //time given to a remote player to take a decision before a bot takes it in its place
+    private final static Duration DECISION_DEADLINE = Duration.ofSeconds(60);
+    private final static Duration INITIAL_TICKETS_DEADLINE = Duration.ofSeconds(120);
+    //time without answer after which a remote player is considered disconnected
+    private final static int CONNECTION_LOST_TIMEOUT = 5 * 60 * 1000;
+    //when the JVM is started with -Dtchu.spectatorPort=<port>, the spectators can follow the game on this port
+    private final static Integer SPECTATOR_PORT = Integer.getInteger("tchu.spectatorPort");
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -48,33 +59,88 @@ public final class ServerMain extends Application {
         }
 
         ServerSocket serverSocket = new ServerSocket(portNumber);
+        SpectatorBroadcaster spectatorBroadcaster = spectatorBroadcaster();
 
-        Alert waitingPlayerAlert = waitingForPlayerAlert(portNumber);
+        Alert waitingPlayerAlert = waitingForPlayerAlert(portNumber, spectatorBroadcaster != null);
         waitingPlayerAlert.show();
 
         new Thread(()->{
+            List<RemotePlayerProxy> proxies = new ArrayList<>();
             for(PlayerId playerId : PlayerId.getAllPlayer()) {
                 if (playerId==PLAYER_1) continue;
                 Socket socket = null;
                 try {
                     socket = serverSocket.accept();
+                    socket.setSoTimeout(CONNECTION_LOST_TIMEOUT);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
                 RemotePlayerProxy remotePlayerProxy = new RemotePlayerProxy(socket);
-                players.put(playerId, remotePlayerProxy);
+                proxies.add(remotePlayerProxy);
+                players.put(playerId, new TimeLimitedPlayer.Builder(remotePlayerProxy, new BotPlayer(), DECISION_DEADLINE)
+                        .withDeadline(TimeLimitedPlayer.Decision.CHOOSE_INITIAL_TICKETS, INITIAL_TICKETS_DEADLINE)
+                        .build());
                 System.out.println(playerId.name()+" joined");
             }
 
             Player graphicalPlayer = new GraphicalPlayerAdapter();
-            players.put(PLAYER_1, graphicalPlayer);
+            //the events received by the first player are the public events of the game
+            players.put(PLAYER_1, spectatorBroadcaster == null ? graphicalPlayer : spectatorBroadcaster.observe(graphicalPlayer));
 
             Platform.runLater(waitingPlayerAlert::close);
-            Game.play(players, playerNames, SortedBag.of(ChMap.tickets()), new Random());
+            acceptResumedSessions(serverSocket, proxies);
+            Game.play(players, playerNames, SortedBag.of(GameMap.active().tickets()), new Random());
+            if(spectatorBroadcaster != null) spectatorBroadcaster.close();
+            try {
+                serverSocket.close(); //the clients stop trying to resume their session
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }).start();
 
     }
 
+    /**
+     * @return the broadcaster of the game to the spectators on SPECTATOR_PORT, null if there are no spectators or if
+     * the port can not be opened (the game is then played without spectators)
+     */
+    private static SpectatorBroadcaster spectatorBroadcaster(){
+        if(SPECTATOR_PORT == null) return null;
+        try {
+            return new SpectatorBroadcaster(SPECTATOR_PORT);
+        } catch (UncheckedIOException e) {
+            System.out.println("The port of the spectators " + SPECTATOR_PORT + " can not be opened, the game is played without spectators : " + e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * once all the players have joined, the connections received on the port of the players are the ones of the remote
+     * players resuming their session after losing their connection. Each one is handled by its own thread, so that a
+     * connection that does not send anything does not delay the others
+     * @param serverSocket the socket on which the players have joined, closed at the end of the game
+     * @param proxies the proxies of the remote players
+     */
+    private static void acceptResumedSessions(ServerSocket serverSocket, List<RemotePlayerProxy> proxies){
+        Thread thread = new Thread(()->{
+            while (!serverSocket.isClosed()){
+                try {
+                    Socket socket = serverSocket.accept();
+                    socket.setSoTimeout(CONNECTION_LOST_TIMEOUT);
+                    Thread resumer = new Thread(()->{
+                        if(RemotePlayerProxy.resume(socket, proxies)) System.out.println("A remote player has resumed its session");
+                    }, "session-resumer");
+                    resumer.setDaemon(true);
+                    resumer.start();
+                } catch (IOException e) {
+                    //the server socket has been closed at the end of the game
+                }
+            }
+        }, "session-acceptor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     private static String showMyIpAddress(){
         try {
             return NetworkInterface.networkInterfaces().filter(i -> {
@@ -93,7 +159,7 @@ public final class ServerMain extends Application {
         return "adresse ip non trouvé";
     }
 
-    private static Alert waitingForPlayerAlert(int portNumber){
+    private static Alert waitingForPlayerAlert(int portNumber, boolean spectators){
 
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Small info");
@@ -102,6 +168,7 @@ public final class ServerMain extends Application {
                 "We are waiting for player to join \n" +
                         "Please give them this information: \n" +
                         "Port : "+portNumber+"\n" +
+                        (spectators ? "Spectators port : "+SPECTATOR_PORT+"\n" : "") +
                         "Ip : "+ showMyIpAddress()
         );
         return alert;
@@ -23,6 +23,7 @@ public final class StringsFr {
     // Titre des fenêtres
     public static final String TICKETS_CHOICE = "Choix de billets";
     public static final String CARDS_CHOICE = "Choix de cartes";
+    public static final String WAITING_FOR_GAME = "En attente du début de la partie…";
 
     // Invites
     public static final String CHOOSE_TICKETS =
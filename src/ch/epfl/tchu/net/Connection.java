@@ -0,0 +1,128 @@
+package ch.epfl.tchu.net;
+
+import java.io.*;
+import java.net.Socket;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * the line based connection between a RemotePlayerProxy and a RemotePlayerClient.
+ * When the connection opens, the client says if it wants the messages to be compressed (one byte COMPRESSED or PLAIN)
+ * and the server answers with the mode that will be used by both sides.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class Connection {
+
+    private final static int PLAIN = 'P';
+    private final static int COMPRESSED = 'D';
+
+    private final Socket socket;
+    private final BufferedReader r;
+    private final BufferedWriter w;
+    private final DeflateOutputStream deflateOutputStream; //null if the connection is not compressed
+
+    /**
+     * private constructor wrapping the given streams, with the compression layer under the reader and the writer if needed
+     * @param socket the socket of the connection
+     * @param in the input stream of the socket
+     * @param out the output stream of the socket
+     * @param compressed if the messages are compressed
+     */
+    private Connection(Socket socket, InputStream in, OutputStream out, boolean compressed){
+        this.socket = socket;
+        this.deflateOutputStream = compressed ? new DeflateOutputStream(out) : null;
+        this.r = new BufferedReader(new InputStreamReader(compressed ? new DeflateInputStream(in) : in, US_ASCII));
+        this.w = new BufferedWriter(new OutputStreamWriter(compressed ? deflateOutputStream : out, US_ASCII));
+    }
+
+    /**
+     * open the server side of the connection, the compression is used only if the client asks for it and the server allows it
+     * @param socket the socket connected to the client
+     * @param compressionAllowed if the server accepts to compress the messages
+     * @return the connection
+     * @throws UncheckedIOException if the negotiation fails
+     */
+    public static Connection ofServer(Socket socket, boolean compressionAllowed){
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            int asked = in.read();
+            if(asked != PLAIN && asked != COMPRESSED) throw new IOException("Invalid connection mode " + asked);
+
+            boolean compressed = compressionAllowed && asked == COMPRESSED;
+            out.write(compressed ? COMPRESSED : PLAIN);
+            out.flush();
+            return new Connection(socket, in, out, compressed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * open the client side of the connection
+     * @param socket the socket connected to the server
+     * @param compressionWanted if the client wants the messages to be compressed
+     * @return the connection, compressed only if the server has accepted
+     * @throws UncheckedIOException if the negotiation fails
+     */
+    public static Connection ofClient(Socket socket, boolean compressionWanted){
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            out.write(compressionWanted ? COMPRESSED : PLAIN);
+            out.flush();
+
+            int answer = in.read();
+            if(answer != PLAIN && answer != COMPRESSED) throw new IOException("Invalid connection mode " + answer);
+            return new Connection(socket, in, out, answer == COMPRESSED);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the next line received, null if the connection has been closed
+     * @throws IOException if the reading fails
+     */
+    public String readLine() throws IOException {
+        return r.readLine();
+    }
+
+    /**
+     * send the given message followed by a line break
+     * @param message the message to send
+     * @throws IOException if the writing fails
+     */
+    public void writeLine(String message) throws IOException {
+        w.write(message);
+        w.write('\n');
+        w.flush();
+    }
+
+    /**
+     * close the socket of the connection, a thread blocked on readLine is released with an exception
+     */
+    public void close(){
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return true if the messages are compressed
+     */
+    public boolean isCompressed(){
+        return deflateOutputStream != null;
+    }
+
+    /**
+     * @return the ratio between the bytes really sent and the bytes of the messages sent (1 if the connection is not compressed)
+     */
+    public double sentCompressionRatio(){
+        if(deflateOutputStream == null || deflateOutputStream.rawBytes() == 0) return 1;
+        return (double) deflateOutputStream.sentBytes() / deflateOutputStream.rawBytes();
+    }
+}
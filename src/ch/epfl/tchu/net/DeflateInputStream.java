@@ -0,0 +1,154 @@
+package ch.epfl.tchu.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static ch.epfl.tchu.net.DeflateOutputStream.DEFLATED_FRAME;
+import static ch.epfl.tchu.net.DeflateOutputStream.MAX_FRAME_SIZE;
+import static ch.epfl.tchu.net.DeflateOutputStream.RAW_FRAME;
+
+/**
+ * input stream reading the frames written by a DeflateOutputStream and giving back the original bytes.
+ * A frame whose payload or decoded bytes exceed MAX_FRAME_SIZE is rejected before it is read or decoded any further,
+ * so that a corrupted or malicious stream can not make the reader allocate more.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class DeflateInputStream extends InputStream {
+
+    private final static int INITIAL_BUFFER_SIZE = 512;
+    private final static int MAX_LENGTH_BYTES = 5; //of the varint of a length, enough for any int
+
+    private final InputStream in;
+    private final Inflater inflater;
+    private byte[] payload;     //reused buffer receiving the payload of the current frame
+    private byte[] frame;       //decoded bytes of the current frame
+    private int frameSize;
+    private int position;       //index of the next byte of frame to return
+
+    /**
+     * @param in the stream from which the frames are read
+     */
+    DeflateInputStream(InputStream in){
+        this.in = in;
+        this.inflater = new Inflater(true);
+        this.payload = new byte[INITIAL_BUFFER_SIZE];
+        this.frame = new byte[INITIAL_BUFFER_SIZE];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(position == frameSize && !readFrame()) return -1;
+        return frame[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) return 0;
+        if(position == frameSize && !readFrame()) return -1;
+        int n = Math.min(len, frameSize - position);
+        System.arraycopy(frame, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return frameSize - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * read and decode the next (non empty) frame of the underlying stream
+     * @return false if the end of the underlying stream has been reached between two frames
+     * @throws IOException if the stream ends in the middle of a frame, if a frame is corrupted or bigger than MAX_FRAME_SIZE
+     */
+    private boolean readFrame() throws IOException {
+        do {
+            int flag = in.read();
+            if(flag == -1) return false;
+
+            int length = readLength();
+            if(length > payload.length) payload = new byte[Math.min(Math.max(length, payload.length * 2), MAX_FRAME_SIZE)];
+            readFully(payload, length);
+            position = 0;
+
+            switch (flag){
+                case RAW_FRAME:
+                    if(length > frame.length) frame = new byte[Math.min(Math.max(length, frame.length * 2), MAX_FRAME_SIZE)];
+                    System.arraycopy(payload, 0, frame, 0, length);
+                    frameSize = length;
+                    break;
+                case DEFLATED_FRAME:
+                    inflate(length);
+                    break;
+                default:
+                    throw new IOException("Unknown frame type " + flag);
+            }
+        } while (frameSize == 0);
+        return true;
+    }
+
+    /**
+     * inflate the given number of bytes of payload into frame, which is grown up to MAX_FRAME_SIZE + 1 bytes to know
+     * whether the decoded bytes exceed MAX_FRAME_SIZE
+     */
+    private void inflate(int length) throws IOException {
+        inflater.setInput(payload, 0, length);
+        frameSize = 0;
+        try {
+            int n;
+            do { //the output buffer is grown until all the input has been consumed and nothing is pending anymore
+                if(frameSize == frame.length){
+                    if(frameSize > MAX_FRAME_SIZE) throw new IOException("Decoded frame bigger than " + MAX_FRAME_SIZE + " bytes");
+                    frame = Arrays.copyOf(frame, Math.min(frame.length * 2, MAX_FRAME_SIZE + 1));
+                }
+                n = inflater.inflate(frame, frameSize, frame.length - frameSize);
+                frameSize += n;
+            } while (frameSize == frame.length || (n > 0 && !inflater.needsInput()));
+            if(frameSize > MAX_FRAME_SIZE) throw new IOException("Decoded frame bigger than " + MAX_FRAME_SIZE + " bytes");
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return the length of the payload of a frame, written as a varint of at most 5 bytes
+     * @throws IOException if the varint is longer or if the length exceeds MAX_FRAME_SIZE
+     */
+    private int readLength() throws IOException {
+        long length = 0;
+        int shift = 0;
+        int b;
+        do {
+            if(shift == MAX_LENGTH_BYTES * 7) throw new IOException("Frame length longer than " + MAX_LENGTH_BYTES + " bytes");
+            b = in.read();
+            if(b == -1) throw new EOFException();
+            length |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if(length > MAX_FRAME_SIZE) throw new IOException("Frame of " + length + " bytes, bigger than " + MAX_FRAME_SIZE);
+        return (int) length;
+    }
+
+    private void readFully(byte[] b, int length) throws IOException {
+        int read = 0;
+        while (read < length){
+            int n = in.read(b, read, length - read);
+            if(n == -1) throw new EOFException();
+            read += n;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ch.epfl.tchu.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * output stream cutting the written bytes into frames (one frame per flush) and compressing the frames that are big enough
+ * with a Deflater in SYNC_FLUSH mode, so that each frame can be decoded as soon as it is received.
+ * A frame is : one flag byte (RAW_FRAME or DEFLATED_FRAME), the length of the payload (varint) and the payload.
+ * Neither the payload nor the decoded bytes of a frame exceed MAX_FRAME_SIZE : the bytes of a bigger flush are sent in
+ * several frames.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class DeflateOutputStream extends OutputStream {
+
+    final static int RAW_FRAME = 0;
+    final static int DEFLATED_FRAME = 1;
+
+    //under this size the deflate header and the sync flush marker cost more than what is gained
+    final static int MIN_DEFLATED_FRAME_SIZE = 96;
+    //maximal size of the payload and of the decoded bytes of a frame, so that a reader never allocates more
+    final static int MAX_FRAME_SIZE = 1 << 20;
+    //the bytes of a flush are deflated by parts of this size, whose compression (at worst a few bytes more per block of
+    //16 KiB than the data itself) always fits in MAX_FRAME_SIZE
+    private final static int MAX_PART_SIZE = MAX_FRAME_SIZE / 2;
+
+    private final static int INITIAL_BUFFER_SIZE = 512;
+    private final static int MAX_HEADER_SIZE = 6; //flag byte + at most 5 bytes of varint
+
+    private final OutputStream out;
+    private final Deflater deflater;
+    private byte[] frame;       //bytes written since the last flush
+    private int frameSize;
+    private byte[] deflated;    //reused buffer receiving the compressed frame
+    private byte[] packet;      //reused buffer receiving the header and the payload of the frame to send
+
+    private long rawBytes;      //statistics : number of bytes written by the user of the stream
+    private long sentBytes;     //statistics : number of bytes written on the underlying stream
+
+    /**
+     * @param out the stream on which the frames are written
+     */
+    DeflateOutputStream(OutputStream out){
+        this.out = out;
+        this.deflater = new Deflater(Deflater.BEST_SPEED, true);
+        this.frame = new byte[INITIAL_BUFFER_SIZE];
+        this.deflated = new byte[INITIAL_BUFFER_SIZE];
+        this.packet = new byte[INITIAL_BUFFER_SIZE + MAX_HEADER_SIZE];
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(frameSize + 1);
+        frame[frameSize++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(frameSize + len);
+        System.arraycopy(b, off, frame, frameSize, len);
+        frameSize += len;
+    }
+
+    /**
+     * sends the bytes written since the last flush as one frame (one frame per part of MAX_PART_SIZE bytes if there
+     * are more), deflated only if the frame is big enough
+     * @throws IOException if the underlying stream fails
+     */
+    @Override
+    public void flush() throws IOException {
+        rawBytes += frameSize;
+        for(int start=0;start<frameSize;start+=MAX_PART_SIZE){
+            int size = Math.min(frameSize - start, MAX_PART_SIZE);
+            if(size < MIN_DEFLATED_FRAME_SIZE){
+                writeFrame(RAW_FRAME, frame, start, size);
+                continue;
+            }
+            deflater.setInput(frame, start, size);
+            int deflatedSize = 0;
+            int n;
+            do { //the output buffer is grown until the deflater has nothing left to give
+                if(deflatedSize == deflated.length) deflated = Arrays.copyOf(deflated, deflated.length * 2);
+                n = deflater.deflate(deflated, deflatedSize, deflated.length - deflatedSize, Deflater.SYNC_FLUSH);
+                deflatedSize += n;
+            } while (deflatedSize == deflated.length);
+            writeFrame(DEFLATED_FRAME, deflated, 0, deflatedSize);
+        }
+        frameSize = 0;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            out.close();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return the number of bytes written by the user of the stream
+     */
+    long rawBytes(){
+        return rawBytes;
+    }
+
+    /**
+     * @return the number of bytes really sent on the underlying stream (headers included)
+     */
+    long sentBytes(){
+        return sentBytes;
+    }
+
+    /**
+     * write the header and the payload of a frame on the underlying stream, in a single write so that the frame
+     * is not split in several TCP segments
+     */
+    private void writeFrame(int flag, byte[] payload, int offset, int length) throws IOException {
+        if(length + MAX_HEADER_SIZE > packet.length) packet = new byte[Math.max(length + MAX_HEADER_SIZE, packet.length * 2)];
+        int size = 0;
+        packet[size++] = (byte) flag;
+        int remaining = length;
+        while (remaining >= 0x80){ //varint : 7 bits per byte, the highest bit says if another byte follows
+            packet[size++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        packet[size++] = (byte) remaining;
+        System.arraycopy(payload, offset, packet, size, length);
+        size += length;
+        out.write(packet, 0, size);
+        sentBytes += size;
+    }
+
+    private void ensureCapacity(int capacity){
+        if(capacity > frame.length) frame = Arrays.copyOf(frame, Math.max(capacity, frame.length * 2));
+    }
+}
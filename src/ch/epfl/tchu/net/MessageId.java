@@ -16,4 +16,6 @@ public enum MessageId {
     ROUTE,
     CARDS,
     CHOOSE_ADDITIONAL_CARDS,
+    RESUME,
+    RESUMED,
 }
@@ -4,28 +4,46 @@ import ch.epfl.tchu.game.Player;
 import ch.epfl.tchu.game.PlayerId;
 
 import java.io.*;
+import java.net.ConnectException;
 import java.net.Socket;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.LongConsumer;
 import java.util.regex.Pattern;
 import static ch.epfl.tchu.net.Serdes.*;
-import static java.nio.charset.StandardCharsets.US_ASCII;
 
 /**
- * a class making the relation between the graphical interface of a player and the proxy of the player based on the server
+ * a class making the relation between the graphical interface of a player and the proxy of the player based on the server.
+ * If the connection is lost, the client opens a new one and resumes its session with the session token given by the proxy
+ * at the beginning of the game : the proxy sends again the messages that have not been received, and the client its last
+ * answer if the proxy has not received it.
  * @author Tom Nonnenmacher (Sciper : 325341)
  * @author Théo Ducrey (Sciper : 324915)
  */
 public final class RemotePlayerClient {
 
     private final Player player;
-    private final BufferedReader r;
-    private final BufferedWriter w;
+    private final String name;
+    private final int port;
+    private final boolean compression;
+    private Connection connection;
+
+    private String sessionToken;    //null until the proxy has given it, the session can not be resumed before
+    private int received;           //number of messages received from the proxy
+    private int repliesSent;        //number of answers sent to the proxy
+    private String lastReply;
+    private LongConsumer readListener;   //null if nobody measures the time the messages are read
 
     private final static int FIRST_ARG = 0;
     private final static int SECOND_ARG = 1;
     private final static int THIRD_ARG = 2;
+    private final static int FOURTH_ARG = 3;
+
+    //time during which the client tries to resume its session after the connection is lost
+    private final static Duration RESUME_TIMEOUT = Duration.ofSeconds(30);
+    private final static Duration RETRY_DELAY = Duration.ofSeconds(1);
 
     /**
      * constructor that initializes the BufferedReader, and the BufferedWriter with the socket created with the name and the port given
@@ -35,19 +53,37 @@ public final class RemotePlayerClient {
      *
      */
     public RemotePlayerClient(Player player, String name, int port){
+        this(player, name, port, false);
+    }
+
+    /**
+     * constructor that opens the connection with the socket created with the name and the port given
+     * @param player : the player that are the client
+     * @param name : the name to connect to the proxy
+     * @param port : the port to connect to the proxy
+     * @param compression : if the client asks the proxy to compress the messages (useful on slow links)
+     */
+    public RemotePlayerClient(Player player, String name, int port, boolean compression){
         this.player = player;
+        this.name = name;
+        this.port = port;
+        this.compression = compression;
         try {
-            Socket socket = new Socket(name, port);
-            r = new BufferedReader(new InputStreamReader(socket.getInputStream(),
-                    US_ASCII));
-            w = new BufferedWriter(
-                    new OutputStreamWriter(socket.getOutputStream(),
-                            US_ASCII));
+            connection = Connection.ofClient(new Socket(name, port), compression);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    /**
+     * set the listener called with the time (given by System.nanoTime) each message is read from the socket, before
+     * the player is called, so that the latency of the interface can be measured from it
+     * @param readListener the listener, null to remove it
+     */
+    public void setReadListener(LongConsumer readListener){
+        this.readListener = readListener;
+    }
+
     /**
      * This method performs a loop during which it :
      *
@@ -57,94 +93,173 @@ public final class RemotePlayerClient {
      * -according to this type of message, deserializes the arguments, calls the corresponding method of the player;
      *   if this method returns a result, serializes it to send it back to the proxy in response.
      *
+     * If the connection is lost, the loop continues on the resumed session, and ends if the session can not be resumed.
      */
     public void run(){
-        try {
-            String currentLine = r.readLine(); // wait to read a line of the stream
-            while (currentLine != null) {
-                String message = currentLine;
-                String[] args = message.split(Pattern.quote(" ")); //we split the message with delimiter " ", args = arguments
-
-                switch (MessageId.valueOf(args[FIRST_ARG])){ //the first argument is the type of message
-
-                    case INIT_PLAYERS:
-                        //if the first arg is INIT_PLAYERS then the second arg is the playerId of the own player and the third argument is the map of the players
-                        List<String> playerNames = listStringSerde.deserialize(args[THIRD_ARG]);
-                        Map<PlayerId,String> nameMap = new HashMap<>();
-                        PlayerId.setNbrPlayer(playerNames.size());
-                        for(int i=0;i<PlayerId.getNbrPlayer();i++){
-                            nameMap.put(PlayerId.getAllPlayer().get(i),playerNames.get(i));
-                        }
-                        player.initPlayers(playerIdSerde.deserialize(args[SECOND_ARG]), nameMap);
-
-                        break;
-                    case RECEIVE_INFO:
-                        //if the first arg is RECEIVE_INFO, then the second argument is the info that the player must received
-                        player.receiveInfo(stringSerde.deserialize(args[SECOND_ARG]));
-                        break;
-                    case UPDATE_STATE:
-                        //if the first arg is UPDATE_STATE, then the second argument is new State of the game, and the third arg is the PlayerState of the ownPlayer
-                        player.updateState(publicGameStateSerde.deserialize(args[SECOND_ARG]),
-                                playerStateSerde.deserialize(args[THIRD_ARG]));
-                        break;
-                    case SET_INITIAL_TICKETS:
-                        //if the first arg is SET_INITIAL_TICKETS, then the second arg is the sorted bag of the tickets
-                        player.setInitialTicketChoice(sortedBagTicketSerde.deserialize(args[SECOND_ARG]));
-                        break;
-                    case CHOOSE_INITIAL_TICKETS:
-                        //if the first arg is CHOOSE_INITIAL_TICKETS, then we need a answer of the client that send his choice
-                        sendMessageProxy(sortedBagTicketSerde.serialize(player.chooseInitialTickets()));
-                        break;
-                    case NEXT_TURN:
-                        //if the first arg is NEXT_TURN, then we need a answer of the client that send his choice for this turn
-                        sendMessageProxy(turnKindSerde.serialize(player.nextTurn()));
-                        break;
-                    case CHOOSE_TICKETS:
-                        //if the first arg is CHOOSE_TICKETS, then the second arg is the sorted bag of tickets, with this information, the player must answer and send his choice
-                        sendMessageProxy(sortedBagTicketSerde.serialize(
-                                player.chooseTickets(sortedBagTicketSerde.deserialize(args[SECOND_ARG]))));
-                        break;
-                    case DRAW_SLOT:
-                        //if the first arg is DRAW_SLOT, then we need a answer of the client that send his choice : deck or index of face up cards
-                        sendMessageProxy(intSerde.serialize(player.drawSlot()));
-                        break;
-                    case ROUTE:
-                        //if the first arg is ROUTE, then we need a answer of the client that send his choice of the route
-                        sendMessageProxy(routeSerde.serialize(player.claimedRoute()));
-                        break;
-                    case CARDS:
-                        //if the first arg is CARDS, then we need a answer of the client that choose the cards to claim the route
-                        sendMessageProxy(sortedBagCardSerde.serialize(player.initialClaimCards()));
-                        break;
-                    case CHOOSE_ADDITIONAL_CARDS:
-                        //if the first arg is CHOOSE_ADDITIONAL_CARDS, then we need a answer of the client that choose the additional cards
-                        sendMessageProxy(sortedBagCardSerde.serialize(
-                                player.chooseAdditionalCards(listSortedBagCardSerde.deserialize(args[SECOND_ARG]))));
-                        break;
-                    default:
-                        break;
-                }
-                currentLine = r.readLine(); //at the end of the analysis of the current message, we read the next line
+        String currentLine = readLine(); // wait to read a line of the stream
+        while (currentLine != null) {
+            String message = currentLine;
+            String[] args = message.split(Pattern.quote(" ")); //we split the message with delimiter " ", args = arguments
+
+            switch (MessageId.valueOf(args[FIRST_ARG])){ //the first argument is the type of message
+
+                case INIT_PLAYERS:
+                    //if the first arg is INIT_PLAYERS then the second arg is the playerId of the own player and the third argument is the map of the players
+                    List<String> playerNames = listStringSerde.deserialize(args[THIRD_ARG]);
+                    Map<PlayerId,String> nameMap = new HashMap<>();
+                    PlayerId.setNbrPlayer(playerNames.size());
+                    for(int i=0;i<PlayerId.getNbrPlayer();i++){
+                        nameMap.put(PlayerId.getAllPlayer().get(i),playerNames.get(i));
+                    }
+                    player.initPlayers(playerIdSerde.deserialize(args[SECOND_ARG]), nameMap);
+                    if(args.length > FOURTH_ARG) sessionToken = args[FOURTH_ARG]; //the fourth argument is the token to resume the session
+
+                    break;
+                case RECEIVE_INFO:
+                    //if the first arg is RECEIVE_INFO, then the second argument is the info that the player must received
+                    player.receiveInfo(stringSerde.deserialize(args[SECOND_ARG]));
+                    break;
+                case UPDATE_STATE:
+                    //if the first arg is UPDATE_STATE, then the second argument is new State of the game, and the third arg is the PlayerState of the ownPlayer
+                    player.updateState(publicGameStateSerde.deserialize(args[SECOND_ARG]),
+                            playerStateSerde.deserialize(args[THIRD_ARG]));
+                    break;
+                case SET_INITIAL_TICKETS:
+                    //if the first arg is SET_INITIAL_TICKETS, then the second arg is the sorted bag of the tickets
+                    player.setInitialTicketChoice(sortedBagTicketSerde.deserialize(args[SECOND_ARG]));
+                    break;
+                case CHOOSE_INITIAL_TICKETS:
+                    //if the first arg is CHOOSE_INITIAL_TICKETS, then we need a answer of the client that send his choice
+                    sendMessageProxy(sortedBagTicketSerde.serialize(player.chooseInitialTickets()));
+                    break;
+                case NEXT_TURN:
+                    //if the first arg is NEXT_TURN, then we need a answer of the client that send his choice for this turn,
+                    //followed by what comes next in the same message : the route and the cards to claim it, or the first slot to draw from
+                    sendMessageProxy(nextTurnReply(player.nextTurn()));
+                    break;
+                case CHOOSE_TICKETS:
+                    //if the first arg is CHOOSE_TICKETS, then the second arg is the sorted bag of tickets, with this information, the player must answer and send his choice
+                    sendMessageProxy(sortedBagTicketSerde.serialize(
+                            player.chooseTickets(sortedBagTicketSerde.deserialize(args[SECOND_ARG]))));
+                    break;
+                case DRAW_SLOT:
+                    //if the first arg is DRAW_SLOT, then we need a answer of the client that send his choice : deck or index of face up cards
+                    sendMessageProxy(intSerde.serialize(player.drawSlot()));
+                    break;
+                case ROUTE:
+                    //if the first arg is ROUTE, then we need a answer of the client that send his choice of the route
+                    sendMessageProxy(routeSerde.serialize(player.claimedRoute()));
+                    break;
+                case CARDS:
+                    //if the first arg is CARDS, then we need a answer of the client that choose the cards to claim the route
+                    sendMessageProxy(sortedBagCardSerde.serialize(player.initialClaimCards()));
+                    break;
+                case CHOOSE_ADDITIONAL_CARDS:
+                    //if the first arg is CHOOSE_ADDITIONAL_CARDS, then we need a answer of the client that choose the additional cards
+                    sendMessageProxy(sortedBagCardSerde.serialize(
+                            player.chooseAdditionalCards(listSortedBagCardSerde.deserialize(args[SECOND_ARG]))));
+                    break;
+                default:
+                    break;
             }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+            currentLine = readLine(); //at the end of the analysis of the current message, we read the next line
         }
+    }
 
+    /**
+     * @param turnKind the kind of turn chosen by the player
+     * @return the answer to NEXT_TURN : the kind of turn, then the route and the initial cards if the player claims a route,
+     * or the first slot if the player draws cards, so that the proxy does not have to ask for them
+     */
+    private String nextTurnReply(Player.TurnKind turnKind){
+        switch (turnKind){
+            case CLAIM_ROUTE:
+                return String.format("%s %s %s", turnKindSerde.serialize(turnKind),
+                        routeSerde.serialize(player.claimedRoute()),
+                        sortedBagCardSerde.serialize(player.initialClaimCards()));
+            case DRAW_CARDS:
+                return String.format("%s %s", turnKindSerde.serialize(turnKind), intSerde.serialize(player.drawSlot()));
+            default:
+                return turnKindSerde.serialize(turnKind);
+        }
     }
 
+    /**
+     * read the next message of the proxy, on a resumed session if the connection is lost
+     * @return the message, null if the connection has been closed and the session can not be resumed
+     * @throws UncheckedIOException if the connection fails and the session can not be resumed
+     */
+    private String readLine(){
+        while (true){
+            IOException failure = null;
+            try {
+                String line = connection.readLine();
+                if(line != null){
+                    if(readListener != null) readListener.accept(System.nanoTime());
+                    received++;
+                    return line;
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            if(!resume()){
+                if(failure != null) throw new UncheckedIOException(failure);
+                return null; //the connection has been closed normally, at the end of the game
+            }
+        }
+    }
 
     /**
      * send a message to the proxy of the removePlayerProxy
      * @param message : message to send to the proxy
      */
     private void sendMessageProxy(String message){
+        lastReply = message;
+        repliesSent++;
         try {
-            w.write(message);
-            w.write('\n');
-            w.flush();
+            connection.writeLine(message);
         } catch (IOException e) {
-            throw new UncheckedIOException(e);
+            if(!resume()) throw new UncheckedIOException(e); //else the answer has been sent again by resume if needed
         }
 
     }
+
+    /**
+     * try to resume the session on a new connection during RESUME_TIMEOUT
+     * @return true if the session has been resumed
+     */
+    private boolean resume(){
+        connection.close();
+        if(sessionToken == null) return false;
+
+        long deadline = System.nanoTime() + RESUME_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline){
+            try {
+                Connection newConnection = Connection.ofClient(new Socket(name, port), compression);
+                newConnection.writeLine(String.format("%s %s %s", MessageId.RESUME.name(), sessionToken, intSerde.serialize(received)));
+
+                String answer = newConnection.readLine();
+                String[] args = answer == null ? new String[0] : answer.split(Pattern.quote(" "));
+                if(args.length != 2 || !args[FIRST_ARG].equals(MessageId.RESUMED.name())){
+                    newConnection.close();
+                    return false; //the proxy refuses to resume the session
+                }
+
+                connection = newConnection;
+                if(repliesSent > intSerde.deserialize(args[SECOND_ARG])) connection.writeLine(lastReply); //the last answer has been lost
+                System.out.println("Session resumed");
+                return true;
+            } catch (ConnectException e) {
+                return false; //nobody listens anymore on the port, the game is over
+            } catch (IOException | UncheckedIOException e) {
+                try {
+                    Thread.sleep(RETRY_DELAY.toMillis());
+                } catch (InterruptedException interruptedException) {
+                    throw new Error();
+                }
+            }
+        }
+        return false;
+    }
 }
@@ -5,66 +5,243 @@ import ch.epfl.tchu.game.*;
 
 import java.io.*;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.*;
+import java.util.regex.Pattern;
 
 import static ch.epfl.tchu.net.Serdes.*;
-import static java.nio.charset.StandardCharsets.US_ASCII;
 
 /**
- * A class that make the relation between a game and a network player
+ * A class that make the relation between a game and a network player.
+ *
+ * A client whose connection is lost can resume its session on a new connection (see resume) : every message sent since
+ * the last answer of the client is kept, and the ones the client has not received are sent again on the new connection.
+ * While the connection is lost the messages are only kept, and a question waits for the client to come back during RESUME_TIMEOUT.
  * @author Tom Nonnenmacher (Sciper : 325341)
  * @author Théo Ducrey (Sciper : 324915)
  */
 public final class RemotePlayerProxy implements Player {
 
-    private final BufferedReader r;
-    private final BufferedWriter w;
+    private final static Duration RESUME_TIMEOUT = Duration.ofSeconds(60);
+    //time given to a client to send RESUME once connected, well below RESUME_TIMEOUT so that a silent connection can not
+    //make a session wait until it is given up
+    private final static Duration RESUME_HANDSHAKE_TIMEOUT = Duration.ofSeconds(10);
+    //over this number of messages without answer of the client, the oldest ones are forgotten and the session can not be resumed anymore
+    private final static int MAX_REPLAY_MESSAGES = 1024;
+    private final static int SESSION_TOKEN_LONGS = 2;
+    private final static SecureRandom TOKEN_GENERATOR = new SecureRandom();
+
+    private final String sessionToken;
+    private final Object lock = new Object();
+    private final ArrayDeque<String> replay;    //messages sent since the last answer of the client
+    private Connection connection;              //null while the connection is lost
+    private int sentCount;                      //number of messages sent since the beginning of the session
+    private int repliesReceived;                //number of answers received since the beginning of the session
+
+    //decisions sent by the client with its answer to NEXT_TURN, given to the game when it asks for them (null once given)
+    private Route claimedRoute;
+    private SortedBag<Card> initialClaimCards;
+    private Integer firstDrawSlot;
 
     /**
-     * constructor that initializes the BufferedReader, and the BufferedWriter with the socket given
+     * constructor that opens the connection with the socket given, the messages are compressed if the client asks for it
      * @param socket : socket of the server
      */
     public RemotePlayerProxy(Socket socket) {
+        this(socket, true);
+    }
+
+    /**
+     * constructor that opens the connection with the socket given
+     * @param socket : socket of the server
+     * @param compressionAllowed : if the messages can be compressed when the client asks for it
+     */
+    public RemotePlayerProxy(Socket socket, boolean compressionAllowed) {
+        connection = Connection.ofServer(socket, compressionAllowed);
+        replay = new ArrayDeque<>();
+
+        StringBuilder token = new StringBuilder();
+        for(int i=0;i<SESSION_TOKEN_LONGS;i++){
+            token.append(String.format("%016x", TOKEN_GENERATOR.nextLong()));
+        }
+        sessionToken = token.toString();
+    }
+
+    /**
+     * resume the session of one of the given proxies on the socket of a client that has lost its connection.
+     * The client sends RESUME, its session token and the number of messages it has received, the proxy answers RESUMED and
+     * the number of answers it has received (so that the client can send its last answer again if it has been lost),
+     * then sends again the messages that the client has not received.
+     * The client has RESUME_HANDSHAKE_TIMEOUT to send RESUME, then the socket gets back its previous timeout.
+     * @param socket : socket of the server, connected to the client
+     * @param proxies : the proxies of the game
+     * @return true if the session has been resumed, else the socket is closed
+     */
+    public static boolean resume(Socket socket, Collection<RemotePlayerProxy> proxies){
+        try {
+            int timeout = socket.getSoTimeout();
+            socket.setSoTimeout((int) RESUME_HANDSHAKE_TIMEOUT.toMillis());
+            Connection connection = Connection.ofServer(socket, true);
+            String line = connection.readLine();
+            socket.setSoTimeout(timeout);
+            String[] args = line == null ? new String[0] : line.split(Pattern.quote(" "));
+            if(args.length == 3 && args[0].equals(MessageId.RESUME.name())){
+                for(RemotePlayerProxy proxy : proxies){
+                    if(proxy.sessionToken.equals(args[1]) && proxy.resume(connection, intSerde.deserialize(args[2]))) return true;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
         try {
-            r = new BufferedReader(
-                    new InputStreamReader(socket.getInputStream(),
-                            US_ASCII));
-            w = new BufferedWriter(
-                    new OutputStreamWriter(socket.getOutputStream(),
-                            US_ASCII));
-        }  catch (IOException e) {
-            throw new UncheckedIOException(e);
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * replace the connection by the given one if the messages not received by the client are still known.
+     * The messages are written without holding the lock, so that a slow client does not block the game : the ones sent
+     * by the game in the meantime are written afterwards, until there is none left and the new connection is used.
+     * @param newConnection : the new connection with the client
+     * @param received : the number of messages received by the client
+     * @return true if the connection has been replaced
+     */
+    private boolean resume(Connection newConnection, int received) throws IOException {
+        int replies;
+        int written = received;     //number of messages sent before the ones still to write
+        List<String> missed;
+        synchronized (lock){
+            replies = repliesReceived;
+            missed = missedMessages(received);
+            if(missed == null) return false;
+        }
+
+        newConnection.writeLine(String.format("%s %s", MessageId.RESUMED.name(), intSerde.serialize(replies)));
+        while (true){
+            for(String message : missed) newConnection.writeLine(message);
+            written += missed.size();
+            synchronized (lock){
+                //an answer received meanwhile on the old connection would not be known by the client, it resumes again
+                if(repliesReceived != replies) return false;
+                if(written == sentCount){
+                    if(connection != null) connection.close(); //the client does not use the old connection anymore
+                    connection = newConnection;
+                    lock.notifyAll();
+                    return true;
+                }
+                missed = missedMessages(written);
+                if(missed == null) return false;
+            }
         }
     }
 
     /**
-     * check if it receive a message
+     * @param received : the number of messages received by the client
+     * @return a copy of the messages sent after them, null if some of these messages are not kept anymore (the lock must
+     * be held)
+     */
+    private List<String> missedMessages(int received){
+        int firstKept = sentCount - replay.size(); //number of messages sent before the first kept one
+        if(received < firstKept || received > sentCount) return null;
+        List<String> missed = new ArrayList<>(sentCount - received);
+        Iterator<String> messages = replay.iterator();
+        for(int i=firstKept;i<sentCount;i++){
+            String message = messages.next();
+            if(i >= received) missed.add(message);
+        }
+        return missed;
+    }
+
+    /**
+     * wait for an answer of the client, on the connection resumed by the client if the connection is lost
      * @return the received message
+     * @throws UncheckedIOException if the client has not resumed its session in time
      */
     private String receiveMessage(){
-        try {
-            return r.readLine();
-        }catch (IOException e) {
-            throw new UncheckedIOException(e);
+        while (true){
+            Connection current = currentConnection();
+            String line = null;
+            try {
+                line = current.readLine();
+            } catch (IOException e) {
+                //the connection is lost, the client may resume its session
+            }
+
+            synchronized (lock){
+                if(connection == current){
+                    if(line != null){
+                        //the client has answered, so it has received every message sent before
+                        repliesReceived++;
+                        replay.clear();
+                        return line;
+                    }
+                    connectionLost();
+                }
+                //else the session has been resumed in the meantime : the answer, if any, is sent again by the client
+            }
         }
     }
 
     /**
-     * send a message to the remotePlayerClient
+     * send a message to the remotePlayerClient, the message is kept until the client answers.
+     * The lock is only held to keep the message : a write can block as long as the client does not read, and the
+     * sessions must be resumed meanwhile
      * @param message : send this message to the stream
      */
     private void sendMessage(String message){
-        try{
-            w.write(message);
-            w.write('\n');
-            w.flush();
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        Connection current;
+        synchronized (lock){
+            replay.add(message);
+            sentCount++;
+            if(replay.size() > MAX_REPLAY_MESSAGES) replay.removeFirst();
+            current = connection;
+        }
+
+        if(current != null){
+            try{
+                current.writeLine(message);
+            } catch (IOException e) {
+                synchronized (lock){
+                    //the message will be sent again if the client resumes its session, unless it has already been
+                    if(connection == current) connectionLost();
+                }
+            }
         }
     }
 
+    /**
+     * @return the current connection, after waiting for the client to resume its session if the connection is lost
+     * @throws UncheckedIOException if the client has not resumed its session in time
+     */
+    private Connection currentConnection(){
+        synchronized (lock){
+            long deadline = System.nanoTime() + RESUME_TIMEOUT.toNanos();
+            while (connection == null){
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0) throw new UncheckedIOException(new IOException("Connection lost with the client"));
+                try {
+                    lock.wait(remaining / 1_000_000 + 1);
+                } catch (InterruptedException e) {
+                    throw new Error();
+                }
+            }
+            return connection;
+        }
+    }
+
+    /**
+     * close the current connection, the lock must be held
+     */
+    private void connectionLost(){
+        connection.close();
+        connection = null;
+        System.out.println("Connection lost with a remote player, waiting for it to resume");
+    }
+
     /**
      *  which is called at the start of the game to communicate to the player its  identity(ownId),
      *  as well as the names of the various players, including its own, that are in playerNames,
@@ -77,10 +254,12 @@ public final class RemotePlayerProxy implements Player {
         List<String> playerNamesString = new ArrayList<>();
         PlayerId.getAllPlayer().forEach(playerId->playerNamesString.add(playerNames.get(playerId)));
 
-        String message = String.format("%s %s %s",
+        //the session token is given to the client so that it can resume its session if the connection is lost
+        String message = String.format("%s %s %s %s",
                 MessageId.INIT_PLAYERS.name(),
                 playerIdSerde.serialize(ownId),
-                listStringSerde.serialize(playerNamesString));
+                listStringSerde.serialize(playerNamesString),
+                sessionToken);
 
         sendMessage(message);
     }
@@ -140,7 +319,20 @@ public final class RemotePlayerProxy implements Player {
     @Override
     public TurnKind nextTurn() {
         sendMessage(MessageId.NEXT_TURN.name());
-        return turnKindSerde.deserialize(receiveMessage());
+        //the answer contains the kind of turn followed by the route and the cards, or by the first slot to draw from
+        String[] args = receiveMessage().split(Pattern.quote(" "), -1);
+        TurnKind turnKind = turnKindSerde.deserialize(args[0]);
+
+        claimedRoute = null;
+        initialClaimCards = null;
+        firstDrawSlot = null;
+        if(turnKind == TurnKind.CLAIM_ROUTE && args.length == 3){
+            claimedRoute = routeSerde.deserialize(args[1]);
+            initialClaimCards = sortedBagCardSerde.deserialize(args[2]);
+        } else if(turnKind == TurnKind.DRAW_CARDS && args.length == 2){
+            firstDrawSlot = intSerde.deserialize(args[1]);
+        }
+        return turnKind;
     }
 
     /**
@@ -166,6 +358,11 @@ public final class RemotePlayerProxy implements Player {
      */
     @Override
     public int drawSlot() {
+        if(firstDrawSlot != null){ //already given with the answer to NEXT_TURN
+            int drawSlot = firstDrawSlot;
+            firstDrawSlot = null;
+            return drawSlot;
+        }
         sendMessage(MessageId.DRAW_SLOT.name());
         return intSerde.deserialize(receiveMessage());
     }
@@ -177,6 +374,11 @@ public final class RemotePlayerProxy implements Player {
      */
     @Override
     public Route claimedRoute() {
+        if(claimedRoute != null){ //already given with the answer to NEXT_TURN
+            Route route = claimedRoute;
+            claimedRoute = null;
+            return route;
+        }
         sendMessage(MessageId.ROUTE.name());
         return routeSerde.deserialize(receiveMessage());
     }
@@ -188,6 +390,11 @@ public final class RemotePlayerProxy implements Player {
      */
     @Override
     public SortedBag<Card> initialClaimCards() {
+        if(initialClaimCards != null){ //already given with the answer to NEXT_TURN
+            SortedBag<Card> cards = initialClaimCards;
+            initialClaimCards = null;
+            return cards;
+        }
         sendMessage(MessageId.CARDS.name());
         return sortedBagCardSerde.deserialize(receiveMessage());
     }
@@ -145,9 +145,12 @@ public interface Serde<T> {
             @Override
             public String serialize(SortedBag<T> sortedBagToSerialize) {
                 StringJoiner stringJoiner = new StringJoiner(delimiter);
-                for (T listToSerializeElem :sortedBagToSerialize) {
-                    stringJoiner.add(serdeToUse.serialize(listToSerializeElem));
-                }
+                sortedBagToSerialize.forEachEntry((elem, count) -> {
+                    String serializedElem = serdeToUse.serialize(elem); //each distinct element is serialized only once
+                    for (int i = 0; i < count; i++) {
+                        stringJoiner.add(serializedElem);
+                    }
+                });
                 return stringJoiner.toString();
             }
 
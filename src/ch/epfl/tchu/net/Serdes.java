@@ -33,8 +33,8 @@ public abstract class Serdes {
     final public static Serde<PlayerId> playerIdSerde = Serde.oneOf(PlayerId.getAllPlayer());
     final public static Serde<Player.TurnKind> turnKindSerde = Serde.oneOf(Player.TurnKind.ALL);
     final public static Serde<Card> cardSerde = Serde.oneOf(Card.ALL);
-    final public static Serde<Route> routeSerde = Serde.oneOf(ChMap.routes());
-    final public static Serde<Ticket> ticketSerde = Serde.oneOf(ChMap.tickets());
+    final public static Serde<Route> routeSerde = Serde.oneOf(GameMap.active().routes());
+    final public static Serde<Ticket> ticketSerde = Serde.oneOf(GameMap.active().tickets());
 
     //Serdes for List/SortedBag with serde to use and delimiter
     private final static String DELIMITER_STRING = ",";
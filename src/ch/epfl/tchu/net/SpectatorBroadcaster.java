@@ -0,0 +1,359 @@
+package ch.epfl.tchu.net;
+
+import ch.epfl.tchu.SortedBag;
+import ch.epfl.tchu.game.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static ch.epfl.tchu.net.Serdes.*;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * sends the public event stream of a game (public game states and infos, never the private state of a player)
+ * to the read-only spectators connected on a given port.
+ *
+ * The game thread only queues the events, the serialization and the writing are done on the thread of the broadcaster:
+ * each message is serialized once and the same bytes are written to every spectator with non-blocking sockets.
+ * A spectator that is late only receives the most recent game state, and is disconnected if it is too late.
+ * The messages are the ones of SpectatorMessageId, read by a SpectatorClient.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class SpectatorBroadcaster {
+
+    //over this number of bytes waiting to be sent, the spectator is considered too slow and is disconnected
+    private final static int MAX_PENDING_BYTES = 1 << 18;
+    private final static int READ_BUFFER_SIZE = 64;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Queue<Event> events;
+    private final AtomicBoolean wakeupPending;
+    private final List<Spectator> spectators;
+    private final ByteBuffer readBuffer;
+    private volatile boolean running;
+
+    //last messages sent, given to the spectators joining a running game
+    private ByteBuffer playerNamesMessage;
+    private ByteBuffer gameStateMessage;
+
+    /**
+     * open the port on which the spectators can connect and start the thread of the broadcaster
+     * @param port the port on which the spectators connect
+     * @throws UncheckedIOException if the port can not be opened
+     */
+    public SpectatorBroadcaster(int port){
+        this.events = new ConcurrentLinkedQueue<>();
+        this.wakeupPending = new AtomicBoolean();
+        this.spectators = new ArrayList<>();
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        try {
+            this.selector = Selector.open();
+            this.serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.running = true;
+
+        Thread thread = new Thread(this::run, "spectator-broadcaster");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @param player the player whose public events are broadcast
+     * @return a player behaving like the given one and sending in addition to the spectators the names of the players,
+     * the infos and the public part of the game states it receives
+     */
+    public Player observe(Player player){
+        return new ObservedPlayer(player, this);
+    }
+
+    /**
+     * @return the number of spectators currently connected
+     */
+    public int spectatorCount(){
+        synchronized (spectators){
+            return spectators.size();
+        }
+    }
+
+    /**
+     * stop the broadcaster and disconnect all the spectators
+     */
+    public void close(){
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * queue an event for the thread of the broadcaster, the selector is woken up only if it is not already going to be
+     */
+    private void publish(SpectatorMessageId messageId, Object value){
+        events.add(new Event(messageId, value));
+        if(wakeupPending.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    /**
+     * loop of the thread of the broadcaster
+     */
+    private void run(){
+        try {
+            while (running){
+                selector.select();
+                wakeupPending.set(false); //must be reset before draining, so that an event published after is not missed
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(!key.isValid()) continue;
+                    if(key.isAcceptable()) accept();
+                    else {
+                        Spectator spectator = (Spectator) key.attachment();
+                        if(key.isReadable()) read(spectator);
+                        if(key.isValid() && key.isWritable()) write(spectator);
+                    }
+                }
+
+                Event event;
+                while ((event = events.poll()) != null) broadcast(event);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (spectators){
+                new ArrayList<>(spectators).forEach(this::disconnect);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null){
+            channel.configureBlocking(false);
+            Spectator spectator = new Spectator(channel);
+            spectator.key = channel.register(selector, SelectionKey.OP_READ, spectator);
+            synchronized (spectators){
+                spectators.add(spectator);
+            }
+            //a spectator joining a running game starts from the last known state
+            if(playerNamesMessage != null) enqueue(spectator, playerNamesMessage, false);
+            if(gameStateMessage != null) enqueue(spectator, gameStateMessage, true);
+        }
+    }
+
+    /**
+     * the spectators are read-only, reading only allows to know when they leave
+     */
+    private void read(Spectator spectator){
+        try {
+            readBuffer.clear();
+            if(spectator.channel.read(readBuffer) == -1) disconnect(spectator);
+        } catch (IOException e) {
+            disconnect(spectator);
+        }
+    }
+
+    /**
+     * serialize the event once and give the resulting bytes to every spectator
+     */
+    private void broadcast(Event event){
+        ByteBuffer message;
+        switch (event.messageId){
+            case PLAYER_NAMES:
+                @SuppressWarnings("unchecked") List<String> playerNames = (List<String>) event.value;
+                message = toBuffer(String.format("%s %s", SpectatorMessageId.PLAYER_NAMES.name(), listStringSerde.serialize(playerNames)));
+                playerNamesMessage = message;
+                break;
+            case GAME_STATE:
+                message = toBuffer(String.format("%s %s", SpectatorMessageId.GAME_STATE.name(), publicGameStateSerde.serialize((PublicGameState) event.value)));
+                gameStateMessage = message;
+                break;
+            case INFO:
+                message = toBuffer(String.format("%s %s", SpectatorMessageId.INFO.name(), stringSerde.serialize((String) event.value)));
+                break;
+            default:
+                throw new Error();
+        }
+
+        synchronized (spectators){
+            for(Spectator spectator : new ArrayList<>(spectators)){
+                enqueue(spectator, message, event.messageId == SpectatorMessageId.GAME_STATE);
+            }
+        }
+    }
+
+    /**
+     * add a message to the ones waiting to be sent to the spectator and try to send them
+     * @param isGameState if the message is a game state : a game state that has not begun to be sent is replaced by the new one
+     */
+    private void enqueue(Spectator spectator, ByteBuffer message, boolean isGameState){
+        if(isGameState && spectator.pendingGameState != null && spectator.pendingGameState.position() == 0){
+            ByteBuffer skipped = spectator.pendingGameState;
+            spectator.pending.removeIf(b -> b == skipped);
+            spectator.pendingBytes -= skipped.remaining();
+        }
+
+        ByteBuffer copy = message.duplicate(); //shares the bytes, only the position is specific to the spectator
+        spectator.pending.add(copy);
+        spectator.pendingBytes += copy.remaining();
+        if(isGameState) spectator.pendingGameState = copy;
+
+        if(spectator.pendingBytes > MAX_PENDING_BYTES) disconnect(spectator);
+        else write(spectator);
+    }
+
+    /**
+     * write as much as possible of the messages waiting to be sent, without blocking
+     */
+    private void write(Spectator spectator){
+        try {
+            while (!spectator.pending.isEmpty()){
+                ByteBuffer buffer = spectator.pending.peek();
+                spectator.pendingBytes -= spectator.channel.write(buffer);
+                if(buffer.hasRemaining()) break;
+                spectator.pending.poll();
+                if(buffer == spectator.pendingGameState) spectator.pendingGameState = null;
+            }
+            //we are interested in the possibility to write only if some bytes are still waiting
+            spectator.key.interestOps(spectator.pending.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } catch (IOException | CancelledKeyException e) {
+            disconnect(spectator);
+        }
+    }
+
+    private void disconnect(Spectator spectator){
+        synchronized (spectators){
+            spectators.remove(spectator);
+        }
+        spectator.pending.clear();
+        try {
+            spectator.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static ByteBuffer toBuffer(String message){
+        return ByteBuffer.wrap((message + '\n').getBytes(US_ASCII)).asReadOnlyBuffer();
+    }
+
+    /**
+     * event published by the game thread
+     */
+    private static final class Event {
+        private final SpectatorMessageId messageId;
+        private final Object value;
+
+        private Event(SpectatorMessageId messageId, Object value){
+            this.messageId = messageId;
+            this.value = value;
+        }
+    }
+
+    /**
+     * a connected spectator and the messages waiting to be sent to it
+     */
+    private static final class Spectator {
+        private final SocketChannel channel;
+        private final ArrayDeque<ByteBuffer> pending;
+        private SelectionKey key;
+        private ByteBuffer pendingGameState; //the game state in pending, if any
+        private int pendingBytes;
+
+        private Spectator(SocketChannel channel){
+            this.channel = channel;
+            this.pending = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * player delegating everything to the given player and publishing the public events it receives
+     */
+    private static final class ObservedPlayer implements Player {
+        private final Player player;
+        private final SpectatorBroadcaster broadcaster;
+
+        private ObservedPlayer(Player player, SpectatorBroadcaster broadcaster){
+            this.player = player;
+            this.broadcaster = broadcaster;
+        }
+
+        @Override
+        public void initPlayers(PlayerId ownId, Map<PlayerId, String> playerNames) {
+            List<String> playerNamesList = new ArrayList<>();
+            PlayerId.getAllPlayer().forEach(playerId -> playerNamesList.add(playerNames.get(playerId)));
+            broadcaster.publish(SpectatorMessageId.PLAYER_NAMES, playerNamesList);
+            player.initPlayers(ownId, playerNames);
+        }
+
+        @Override
+        public void receiveInfo(String info) {
+            broadcaster.publish(SpectatorMessageId.INFO, info);
+            player.receiveInfo(info);
+        }
+
+        @Override
+        public void updateState(PublicGameState publicGameState, PlayerState ownState) {
+            broadcaster.publish(SpectatorMessageId.GAME_STATE, publicGameState); //only the public part is serialized
+            player.updateState(publicGameState, ownState);
+        }
+
+        @Override
+        public void setInitialTicketChoice(SortedBag<Ticket> tickets) {
+            player.setInitialTicketChoice(tickets);
+        }
+
+        @Override
+        public SortedBag<Ticket> chooseInitialTickets() {
+            return player.chooseInitialTickets();
+        }
+
+        @Override
+        public TurnKind nextTurn() {
+            return player.nextTurn();
+        }
+
+        @Override
+        public SortedBag<Ticket> chooseTickets(SortedBag<Ticket> options) {
+            return player.chooseTickets(options);
+        }
+
+        @Override
+        public int drawSlot() {
+            return player.drawSlot();
+        }
+
+        @Override
+        public Route claimedRoute() {
+            return player.claimedRoute();
+        }
+
+        @Override
+        public SortedBag<Card> initialClaimCards() {
+            return player.initialClaimCards();
+        }
+
+        @Override
+        public SortedBag<Card> chooseAdditionalCards(List<SortedBag<Card>> options) {
+            return player.chooseAdditionalCards(options);
+        }
+    }
+}
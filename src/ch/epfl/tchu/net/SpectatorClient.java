@@ -0,0 +1,127 @@
+package ch.epfl.tchu.net;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.game.PlayerId;
+import ch.epfl.tchu.game.PublicGameState;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static ch.epfl.tchu.net.Serdes.*;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * client of a SpectatorBroadcaster : reads the messages of SpectatorMessageId and gives their content to a listener.
+ * A spectator joining a running game first receives the names of the players and the last public state of the game.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public final class SpectatorClient {
+
+    private final static int FIRST_ARG = 0;
+    private final static int SECOND_ARG = 1;
+
+    private final Listener listener;
+    private final Socket socket;
+    private final BufferedReader reader;
+
+    /**
+     * what a spectator is told about the game
+     */
+    public interface Listener {
+
+        /**
+         * @param playerNames the names of the players
+         */
+        void initPlayers(Map<PlayerId, String> playerNames);
+
+        /**
+         * @param info an info about the progress of the game
+         */
+        void receiveInfo(String info);
+
+        /**
+         * @param publicGameState the new public state of the game
+         */
+        void updateState(PublicGameState publicGameState);
+    }
+
+    /**
+     * connect to a broadcaster
+     * @param listener the listener of the messages
+     * @param name the name of the host of the broadcaster
+     * @param port the port of the spectators
+     * @throws UncheckedIOException if the connection fails
+     */
+    public SpectatorClient(Listener listener, String name, int port){
+        this.listener = listener;
+        try {
+            this.socket = new Socket(name, port);
+            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), US_ASCII));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * follow a game in the terminal, printing its infos
+     * @param args the name of the host and the port of the spectators
+     */
+    public static void main(String[] args){
+        Preconditions.checkArgument(args.length == 2);
+        new SpectatorClient(new Listener() {
+            @Override
+            public void initPlayers(Map<PlayerId, String> playerNames) {
+                System.out.println("Players : " + String.join(", ", playerNames.values()));
+            }
+
+            @Override
+            public void receiveInfo(String info) {
+                System.out.print(info);
+            }
+
+            @Override
+            public void updateState(PublicGameState publicGameState) {}
+        }, args[0], Integer.parseInt(args[1])).run();
+    }
+
+    /**
+     * read the messages and call the listener until the broadcaster closes the connection (at the end of the game)
+     * @throws UncheckedIOException if the connection fails
+     */
+    public void run(){
+        try (socket) {
+            String line;
+            while ((line = reader.readLine()) != null){
+                String[] args = line.split(Pattern.quote(" "));
+                switch (SpectatorMessageId.valueOf(args[FIRST_ARG])){
+                    case PLAYER_NAMES:
+                        List<String> playerNames = listStringSerde.deserialize(args[SECOND_ARG]);
+                        //the number of players is known from the names, unless it is already set (by a server in the same JVM)
+                        if(PlayerId.getNbrPlayer() != playerNames.size()) PlayerId.setNbrPlayer(playerNames.size());
+                        Map<PlayerId, String> nameMap = new EnumMap<>(PlayerId.class);
+                        for(int i=0;i<playerNames.size();i++) nameMap.put(PlayerId.getAllPlayer().get(i), playerNames.get(i));
+                        listener.initPlayers(nameMap);
+                        break;
+                    case GAME_STATE:
+                        listener.updateState(publicGameStateSerde.deserialize(args[SECOND_ARG]));
+                        break;
+                    case INFO:
+                        listener.receiveInfo(stringSerde.deserialize(args[SECOND_ARG]));
+                        break;
+                    default:
+                        throw new Error();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ch.epfl.tchu.net;
+
+/**
+ * the messages sent by a SpectatorBroadcaster to its spectators, one per line, the name of the message being followed
+ * by a space and its argument (see docs/spectators.md) :
+ * - PLAYER_NAMES : the names of the players, in the order of their ids, serialized by Serdes.listStringSerde ;
+ * - GAME_STATE : the public state of the game, serialized by Serdes.publicGameStateSerde ;
+ * - INFO : an info about the progress of the game, serialized by Serdes.stringSerde.
+ * They differ from the messages of the players (MessageId), a spectator being none of the players and never receiving
+ * the private state of a player.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+public enum SpectatorMessageId {
+    PLAYER_NAMES,
+    GAME_STATE,
+    INFO,
+}
@@ -0,0 +1,159 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+import ch.epfl.tchu.SortedBag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * check and benchmark of MoveValidator.isValidClaim on the states of random games (see RandomGames) : for each state,
+ * every route of the active map is tried with each of its sets of initial cards and with illegal ones, and the answer
+ * must be the one of the reference check, built on PlayerState :
+ * neither the route nor its twin is claimed, canClaimRoute(route) and possibleClaimCards(route) contains the cards.
+ * The validator is updated at each state, as in Game, so its index of the owners is checked as well.
+ * Then both checks are timed on the same claims, and the update of the validator on the states (see docs/checks.md) :
+ * <pre>
+ * java -cp out:test-out ch.epfl.tchu.game.MoveValidatorCheck 2 50
+ * </pre>
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class MoveValidatorCheck {
+
+    private final static int MAX_TURNS = 400;
+    private final static int MAX_TIMED_STATES = 2000;
+    private final static int VALIDATOR_RUNS = 20;
+    private final static int REFERENCE_RUNS = 3;
+
+    private MoveValidatorCheck(){}
+
+    /**
+     * check the claims of all the states, an AssertionError being thrown at the first difference, then print the times
+     * @param args the number of players and the number of games
+     */
+    public static void main(String[] args){
+        Preconditions.checkArgument(args.length == 2);
+        PlayerId.setNbrPlayer(Integer.parseInt(args[0]));
+        int games = Integer.parseInt(args[1]);
+
+        List<GameState> timedStates = new ArrayList<>();
+        long claims = 0;
+        for(int game=0;game<games;game++){
+            Random rng = new Random(game);
+            MoveValidator validator = new MoveValidator();
+            GameState gameState = RandomGames.initialState(rng);
+            for(int turn=0;turn<MAX_TURNS;turn++){
+                validator.update(gameState);
+                claims += check(validator, gameState);
+                if(timedStates.size() < MAX_TIMED_STATES) timedStates.add(gameState);
+                gameState = RandomGames.randomTurn(gameState, rng);
+                if(RandomGames.isOver(gameState)) break;
+                gameState = gameState.forNextTurn();
+            }
+        }
+        System.out.printf("%d claims checked, all equal to the reference%n", claims);
+
+        benchmark(timedStates);
+    }
+
+    /**
+     * @return the number of claims checked
+     * @throws AssertionError if the validator and the reference disagree on a claim
+     */
+    private static int check(MoveValidator validator, GameState gameState){
+        PlayerState playerState = gameState.currentPlayerState();
+        int claims = 0;
+        for(Route route : GameMap.active().routes()){
+            for(SortedBag<Card> cards : claimCards(route)){
+                boolean expected = isValidClaimReference(gameState, playerState, route, cards);
+                if(validator.isValidClaim(playerState, route, cards) != expected){
+                    throw new AssertionError(String.format("claim of %s with %s : %b expected", route.id(), cards, expected));
+                }
+                claims++;
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * time the validator and the reference on all the claims of the states, keeping the fastest run of each
+     */
+    private static void benchmark(List<GameState> states){
+        List<MoveValidator> validators = new ArrayList<>();
+        List<List<SortedBag<Card>>> claimCards = new ArrayList<>();
+        for(GameState gameState : states){
+            MoveValidator validator = new MoveValidator();
+            validator.update(gameState);
+            validators.add(validator);
+        }
+        for(Route route : GameMap.active().routes()) claimCards.add(claimCards(route));
+
+        int claims = 0;
+        int valid = 0; //used, so that the checks are not removed by the compiler
+        long validatorTime = Long.MAX_VALUE;
+        for(int run=0;run<VALIDATOR_RUNS;run++){
+            long start = System.nanoTime();
+            claims = 0;
+            for(int s=0;s<states.size();s++){
+                MoveValidator validator = validators.get(s);
+                PlayerState playerState = states.get(s).currentPlayerState();
+                for(int r=0;r<claimCards.size();r++){
+                    Route route = GameMap.active().routes().get(r);
+                    for(SortedBag<Card> cards : claimCards.get(r)){
+                        if(validator.isValidClaim(playerState, route, cards)) valid++;
+                        claims++;
+                    }
+                }
+            }
+            validatorTime = Math.min(validatorTime, System.nanoTime() - start);
+        }
+
+        long referenceTime = Long.MAX_VALUE;
+        for(int run=0;run<REFERENCE_RUNS;run++){
+            long start = System.nanoTime();
+            for(GameState gameState : states){
+                PlayerState playerState = gameState.currentPlayerState();
+                for(int r=0;r<claimCards.size();r++){
+                    Route route = GameMap.active().routes().get(r);
+                    for(SortedBag<Card> cards : claimCards.get(r)){
+                        if(isValidClaimReference(gameState, playerState, route, cards)) valid++;
+                    }
+                }
+            }
+            referenceTime = Math.min(referenceTime, System.nanoTime() - start);
+        }
+
+        long updateTime = Long.MAX_VALUE;
+        for(int run=0;run<VALIDATOR_RUNS;run++){
+            MoveValidator validator = new MoveValidator();
+            long start = System.nanoTime();
+            for(GameState gameState : states) validator.update(gameState);
+            updateTime = Math.min(updateTime, System.nanoTime() - start);
+        }
+
+        System.out.printf("isValidClaim : %.0f ns per claim, reference : %.0f ns per claim (%d claims, %d valid)%n",
+                (double) validatorTime / claims, (double) referenceTime / claims, claims, valid);
+        System.out.printf("update : %.0f ns per state%n", (double) updateTime / states.size());
+    }
+
+    /**
+     * @return the sets of initial cards of the route, and illegal ones : only locomotives, two types of cars, no card
+     */
+    private static List<SortedBag<Card>> claimCards(Route route){
+        List<SortedBag<Card>> claimCards = new ArrayList<>(route.possibleClaimCards());
+        claimCards.add(SortedBag.of(route.length(), Card.LOCOMOTIVE));
+        claimCards.add(SortedBag.of(1, Card.RED, route.length(), Card.BLUE));
+        claimCards.add(SortedBag.of());
+        return claimCards;
+    }
+
+    private static boolean isValidClaimReference(GameState gameState, PlayerState playerState, Route route, SortedBag<Card> cards){
+        List<Route> claimedRoutes = gameState.claimedRoutes();
+        int twinIndex = LegalMoves.twinIndex(LegalMoves.indexOf(route));
+        boolean free = !claimedRoutes.contains(route)
+                && (twinIndex == LegalMoves.NO_ROUTE || !claimedRoutes.contains(GameMap.active().routes().get(twinIndex)));
+        return free && playerState.canClaimRoute(route) && playerState.possibleClaimCards(route).contains(cards);
+    }
+}
@@ -0,0 +1,99 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * check of the encoding of PackedGameState on the states of random games : each state is encoded and decoded, and the
+ * decoded state must have the same decks, discards, hands, tickets, owners of the routes and zobristKey() as the
+ * original one, and must be encoded in the same bytes.
+ * The games are played with random legal actions from seeded generators, so a failure can be reproduced (see
+ * docs/checks.md) :
+ * <pre>
+ * java -cp out:test-out ch.epfl.tchu.game.PackedGameStateCheck 5 100
+ * java -cp out:test-out ch.epfl.tchu.game.PackedGameStateCheck 2 20 1000
+ * </pre>
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class PackedGameStateCheck {
+
+    private final static int MAX_TURNS = 400;
+
+    private PackedGameStateCheck(){}
+
+    /**
+     * play the games and check all their states, an AssertionError being thrown at the first difference
+     * @param args the number of players, the number of games, and optionally the number of stations of a map of
+     *             MapGenerator to use instead of ChMap
+     */
+    public static void main(String[] args){
+        Preconditions.checkArgument(args.length == 2 || args.length == 3);
+        PlayerId.setNbrPlayer(Integer.parseInt(args[0]));
+        int games = Integer.parseInt(args[1]);
+        if(args.length == 3) GameMap.setActive(MapGenerator.generate(Integer.parseInt(args[2]), 1));
+
+        int states = 0;
+        long bytes = 0;
+        for(int game=0;game<games;game++){
+            Random rng = new Random(game);
+            GameState gameState = RandomGames.initialState(rng);
+            for(int turn=0;turn<MAX_TURNS;turn++){
+                bytes += check(gameState);
+                states++;
+                gameState = RandomGames.randomTurn(gameState, rng);
+                if(RandomGames.isOver(gameState)) break;
+                gameState = gameState.forNextTurn();
+            }
+        }
+
+        try {
+            PackedGameState.decode(new byte[1]);
+            throw new AssertionError("truncated bytes decoded");
+        } catch (IllegalArgumentException e) {
+            //the bytes are rejected as expected
+        }
+        System.out.printf("%d states of %d games checked, %.1f bytes per state%n", states, games, (double) bytes / states);
+    }
+
+    /**
+     * @return the number of bytes of the encoding of the state
+     * @throws AssertionError if the decoded state differs from the state, or is not encoded in the same bytes
+     */
+    private static int check(GameState gameState){
+        byte[] bytes = PackedGameState.encode(gameState);
+        GameState decoded = PackedGameState.decode(bytes);
+
+        checkThat(Arrays.equals(bytes, PackedGameState.encode(decoded)), "re-encoded bytes");
+        checkThat(decoded.zobristKey() == gameState.zobristKey(), "zobrist key");
+        checkThat(decoded.currentPlayerId() == gameState.currentPlayerId() && decoded.lastPlayer() == gameState.lastPlayer(), "players");
+
+        CardState cards = gameState.privateCardState();
+        CardState decodedCards = decoded.privateCardState();
+        checkThat(cards.faceUpCards().equals(decodedCards.faceUpCards()), "face up cards");
+        checkThat(cards.deckSize() == decodedCards.deckSize(), "deck size");
+        for(int i=0;i<cards.deckSize();i++) checkThat(cards.deckCard(i) == decodedCards.deckCard(i), "deck");
+        for(Card card : Card.ALL) checkThat(cards.discardsCount(card) == decodedCards.discardsCount(card), "discards");
+
+        checkThat(gameState.ticketsCount() == decoded.ticketsCount(), "tickets deck size");
+        for(int i=0;i<gameState.ticketsCount();i++) checkThat(gameState.ticketsDeck().cardAt(i).equals(decoded.ticketsDeck().cardAt(i)), "tickets deck");
+
+        for(PlayerId playerId : PlayerId.getAllPlayer()){
+            PlayerState playerState = gameState.playerState(playerId);
+            PlayerState decodedPlayerState = decoded.playerState(playerId);
+            checkThat(playerState.cards().equals(decodedPlayerState.cards()), "cards of " + playerId);
+            checkThat(playerState.tickets().equals(decodedPlayerState.tickets()), "tickets of " + playerId);
+            //the routes are decoded in the order of the map
+            checkThat(playerState.routes().size() == decodedPlayerState.routes().size()
+                    && new HashSet<>(playerState.routes()).equals(new HashSet<>(decodedPlayerState.routes())), "routes of " + playerId);
+        }
+        return bytes.length;
+    }
+
+    private static void checkThat(boolean condition, String part){
+        if(!condition) throw new AssertionError("decoded state differs : " + part);
+    }
+}
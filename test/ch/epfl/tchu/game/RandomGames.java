@@ -0,0 +1,68 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.SortedBag;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * games played with random legal actions, to give the checks many different states of the active map. The same
+ * generator always gives the same game.
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class RandomGames {
+
+    private final static int KEPT_INITIAL_TICKETS = 3;
+
+    private RandomGames(){}
+
+    /**
+     * @return the initial state of a game, each player having kept the first tickets of his initial choice
+     */
+    static GameState initialState(Random rng){
+        GameState gameState = GameState.initial(SortedBag.of(GameMap.active().tickets()), rng);
+        for(PlayerId playerId : PlayerId.getAllPlayer()){
+            SortedBag<Ticket> tickets = gameState.topTickets(Constants.INITIAL_TICKETS_COUNT);
+            gameState = gameState.withoutTopTickets(Constants.INITIAL_TICKETS_COUNT)
+                    .withInitiallyChosenTickets(playerId, SortedBag.of(tickets.toList().subList(0, KEPT_INITIAL_TICKETS)));
+        }
+        return gameState;
+    }
+
+    /**
+     * @return the state after a random legal action of the current player : the claim of a route, the draw of tickets
+     * or the draw of a card (the state is unchanged if the player can do none of them)
+     */
+    static GameState randomTurn(GameState gameState, Random rng){
+        PlayerState playerState = gameState.currentPlayerState();
+        int action = rng.nextInt(4);
+        if(action < 2){
+            LegalMoves moves = new LegalMoves();
+            moves.update(gameState, playerState);
+            int claimableCount = moves.claimableRoutes().cardinality();
+            if(claimableCount > 0){
+                int routeIndex = moves.claimableRoutes().stream().skip(rng.nextInt(claimableCount)).findFirst().getAsInt();
+                Route route = GameMap.active().routes().get(routeIndex);
+                List<SortedBag<Card>> options = playerState.possibleClaimCards(route);
+                return gameState.withClaimedRoute(route, options.get(rng.nextInt(options.size())));
+            }
+        }
+        if(action == 2 && gameState.canDrawTickets()){
+            SortedBag<Ticket> drawn = gameState.topTickets(Math.min(Constants.IN_GAME_TICKETS_COUNT, gameState.ticketsCount()));
+            return gameState.withChosenAdditionalTickets(drawn, SortedBag.of(drawn.get(0)));
+        }
+        if(gameState.canDrawCards()){
+            gameState = gameState.withCardsDeckRecreatedIfNeeded(rng);
+            return rng.nextBoolean() ? gameState.withDrawnFaceUpCard(rng.nextInt(Constants.FACE_UP_CARDS_COUNT)) : gameState.withBlindlyDrawnCard();
+        }
+        return gameState;
+    }
+
+    /**
+     * @return true if the game is over after the turn that gave this state
+     */
+    static boolean isOver(GameState gameState){
+        return gameState.lastPlayer() != null && gameState.currentPlayerId() == gameState.lastPlayer();
+    }
+}
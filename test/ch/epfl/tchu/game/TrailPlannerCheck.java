@@ -0,0 +1,193 @@
+package ch.epfl.tchu.game;
+
+import ch.epfl.tchu.Preconditions;
+
+import java.util.*;
+
+/**
+ * check and benchmark of TrailPlanner (see docs/checks.md) :
+ * - on ChMap, after random claims of the player and of the others, the cost of the trail found between every two
+ *   stations must be the one of StationDistances ;
+ * - on a map of MapGenerator, after random claims, the cost of the trail found between random stations must be the
+ *   one of a reference Dijkstra using a java.util.PriorityQueue, and both searches are timed on the same pairs.
+ * <pre>
+ * java -cp out:test-out ch.epfl.tchu.game.TrailPlannerCheck 10000 1
+ * </pre>
+ * @author Tom Nonnenmacher (Sciper : 325341)
+ * @author Théo Ducrey (Sciper : 324915)
+ */
+final class TrailPlannerCheck {
+
+    private final static int NONE = -1;                    //cost of a route that can not be used, or of no path
+    private final static int CHMAP_SEQUENCES = 100;
+    private final static int CHMAP_CHECKS_PER_SEQUENCE = 5;
+    private final static double PLAYER_CLAIMS = 0.05;      //share of the routes of the synthetic map claimed by the player
+    private final static double OTHER_CLAIMS = 0.15;       //and by the others
+    private final static int PAIRS = 200;
+    private final static int RUNS = 5;
+
+    private TrailPlannerCheck(){}
+
+    /**
+     * run the checks, an AssertionError being thrown at the first difference, and print the times
+     * @param args the number of stations and the seed of the synthetic map
+     */
+    public static void main(String[] args){
+        Preconditions.checkArgument(args.length == 2);
+        checkChMap();
+        checkSyntheticMap(MapGenerator.generate(Integer.parseInt(args[0]), Long.parseLong(args[1])), Long.parseLong(args[1]));
+    }
+
+    /**
+     * compare the planner with StationDistances on ChMap, after random sequences of claims
+     */
+    private static void checkChMap(){
+        List<Route> routes = ChMap.routes();
+        List<Station> stations = ChMap.stations();
+        Random rng = new Random(1);
+        long pairs = 0;
+        long queryTime = 0;
+        for(int sequence=0;sequence<CHMAP_SEQUENCES;sequence++){
+            TrailPlanner planner = new TrailPlanner(routes);
+            StationDistances distances = new StationDistances();
+            List<Route> claims = new ArrayList<>(routes);
+            Collections.shuffle(claims, rng);
+            claims = claims.subList(0, rng.nextInt(routes.size()));
+            for(int c=0;c<claims.size();c++){
+                Route route = claims.get(c);
+                if(rng.nextInt(3) == 0){
+                    planner.claimedByPlayer(route);
+                    distances.claimedByPlayer(route);
+                } else {
+                    planner.claimedByOther(route);
+                    distances.claimedByOther(route);
+                }
+                if(c % Math.max(1, claims.size() / CHMAP_CHECKS_PER_SEQUENCE) != 0) continue;
+
+                for(Station from : stations){
+                    for(Station to : stations){
+                        long start = System.nanoTime();
+                        Trail trail = planner.shortestTrail(from, to);
+                        queryTime += System.nanoTime() - start;
+                        int expected = distances.cost(from, to);
+                        checkTrail(planner, trail, from, to, expected == StationDistances.UNREACHABLE ? NONE : expected);
+                        pairs++;
+                    }
+                }
+            }
+        }
+        System.out.printf("ChMap : %d pairs equal to StationDistances, %.1f us per search%n", pairs, queryTime / 1e3 / pairs);
+    }
+
+    /**
+     * compare the planner with the reference on the synthetic map after random claims, and time both
+     */
+    private static void checkSyntheticMap(GameMap map, long seed){
+        List<Route> routes = map.routes();
+        Random rng = new Random(seed);
+        TrailPlanner planner = new TrailPlanner(routes);
+        int[] routeCosts = new int[routes.size()];
+        for(int r=0;r<routes.size();r++) routeCosts[r] = routes.get(r).length();
+
+        //the same rules as the planner : a route of another player and its twin (if it is not the player's) are blocked
+        for(int r=0;r<routes.size();r++){
+            double claim = rng.nextDouble();
+            if(claim < PLAYER_CLAIMS && routeCosts[r] != NONE){
+                planner.claimedByPlayer(routes.get(r));
+                routeCosts[r] = 0;
+            } else if(claim < PLAYER_CLAIMS + OTHER_CLAIMS && routeCosts[r] != 0){
+                planner.claimedByOther(routes.get(r));
+                routeCosts[r] = NONE;
+                int twin = map.twinIndex(r);
+                if(twin != GameMap.NO_ROUTE && routeCosts[twin] != 0) routeCosts[twin] = NONE;
+            }
+        }
+        ReferenceDijkstra reference = new ReferenceDijkstra(map.stations().size(), routes, routeCosts);
+
+        Station[][] pairs = new Station[PAIRS][2];
+        for(Station[] pair : pairs){
+            pair[0] = map.stations().get(rng.nextInt(map.stations().size()));
+            pair[1] = map.stations().get(rng.nextInt(map.stations().size()));
+        }
+
+        long plannerTime = Long.MAX_VALUE;
+        long referenceTime = Long.MAX_VALUE;
+        long totalCost = 0; //used, so that the searches are not removed by the compiler
+        for(int run=0;run<RUNS;run++){
+            long start = System.nanoTime();
+            for(Station[] pair : pairs) totalCost += planner.cost(planner.shortestTrail(pair[0], pair[1]));
+            plannerTime = Math.min(plannerTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for(Station[] pair : pairs) totalCost += Math.max(0, reference.cost(pair[0].id(), pair[1].id()));
+            referenceTime = Math.min(referenceTime, System.nanoTime() - start);
+        }
+        for(Station[] pair : pairs){
+            checkTrail(planner, planner.shortestTrail(pair[0], pair[1]), pair[0], pair[1], reference.cost(pair[0].id(), pair[1].id()));
+        }
+
+        System.out.printf("%d stations, %d routes : %d pairs equal to the reference, %.2f ms per search, reference %.2f ms (%d)%n",
+                map.stations().size(), routes.size(), PAIRS, plannerTime / 1e6 / PAIRS, referenceTime / 1e6 / PAIRS, totalCost);
+    }
+
+    /**
+     * @param expected the cost of the cheapest trail, NONE if the stations can not be connected
+     * @throws AssertionError if the trail does not connect the stations or does not have the expected cost
+     */
+    private static void checkTrail(TrailPlanner planner, Trail trail, Station from, Station to, int expected){
+        String pair = from + " - " + to;
+        if(expected == NONE || from.equals(to)){
+            if(!trail.getTrail().isEmpty()) throw new AssertionError(pair + " : empty trail expected");
+            return;
+        }
+        if(trail.getTrail().isEmpty() || !trail.station1().equals(from) || !trail.station2().equals(to)){
+            throw new AssertionError(pair + " : trail " + trail);
+        }
+        int cost = planner.cost(trail);
+        if(cost != expected) throw new AssertionError(pair + " : cost " + cost + " instead of " + expected);
+    }
+
+    /**
+     * plain Dijkstra, with adjacency lists of objects and a PriorityQueue of stations and costs, stopped at the arrival
+     */
+    private static final class ReferenceDijkstra {
+        private final List<List<int[]>> adjacency;      //per station : {next station, cost}
+
+        private ReferenceDijkstra(int stationCount, List<Route> routes, int[] routeCosts){
+            this.adjacency = new ArrayList<>();
+            for(int s=0;s<stationCount;s++) adjacency.add(new ArrayList<>());
+            for(int r=0;r<routes.size();r++){
+                if(routeCosts[r] == NONE) continue;
+                int s1 = routes.get(r).station1().id();
+                int s2 = routes.get(r).station2().id();
+                adjacency.get(s1).add(new int[]{s2, routeCosts[r]});
+                adjacency.get(s2).add(new int[]{s1, routeCosts[r]});
+            }
+        }
+
+        /**
+         * @return the cost of the cheapest path, NONE if there is none
+         */
+        private int cost(int from, int to){
+            int[] costs = new int[adjacency.size()];
+            Arrays.fill(costs, Integer.MAX_VALUE);
+            costs[from] = 0;
+            PriorityQueue<int[]> queue = new PriorityQueue<>(Comparator.comparingInt(entry -> entry[1]));
+            queue.add(new int[]{from, 0});
+            while (!queue.isEmpty()){
+                int[] entry = queue.poll();
+                int station = entry[0];
+                if(entry[1] > costs[station]) continue; //an older entry of the station
+                if(station == to) return entry[1];
+                for(int[] edge : adjacency.get(station)){
+                    int cost = entry[1] + edge[1];
+                    if(cost < costs[edge[0]]){
+                        costs[edge[0]] = cost;
+                        queue.add(new int[]{edge[0], cost});
+                    }
+                }
+            }
+            return NONE;
+        }
+    }
+}